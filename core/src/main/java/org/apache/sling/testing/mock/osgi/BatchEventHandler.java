@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ConsumerType;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * Event handler receiving asynchronously posted events in batches, if batch delivery is enabled
+ * in {@link MockEventAdmin} via {@link MockEventAdmin#PROPERTY_BATCH_SIZE}.
+ * Events sent synchronously, or posted while batch delivery is disabled, are delivered
+ * one by one via {@link #handleEvent(Event)}.
+ */
+@ConsumerType
+public interface BatchEventHandler extends EventHandler {
+
+    /**
+     * Called by {@link MockEventAdmin} with a batch of posted events, in the order they were posted.
+     * @param events Events
+     */
+    void handleEvents(@NotNull List<Event> events);
+}
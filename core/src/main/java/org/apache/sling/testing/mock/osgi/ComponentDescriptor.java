@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable description of a single component from a SCR metadata XML document
+ * (<code>&lt;scr:component&gt;</code> element).
+ * It is independent of the actual (maybe subclassed or mocked) implementation class,
+ * the {@link OsgiMetadataUtil.OsgiMetadata} for a given class is built from it.
+ */
+final class ComponentDescriptor {
+
+    private final String implementationClass;
+    private final String name;
+    private final String configurationPid;
+    private final Set<String> serviceInterfaces;
+    private final Map<String, Object> properties;
+    private final List<Map<String, String>> references;
+    private final String activateMethodName;
+    private final String deactivateMethodName;
+    private final String modifiedMethodName;
+
+    /**
+     * @param implementationClass Implementation class name
+     * @param name Component name
+     * @param configurationPid Configuration PID(s), separated by whitespace
+     * @param serviceInterfaces Provided service interfaces
+     * @param properties Component properties
+     * @param references Attributes of the references, one map per reference
+     * @param activateMethodName Name of activate method
+     * @param deactivateMethodName Name of deactivate method
+     * @param modifiedMethodName Name of modified method
+     */
+    ComponentDescriptor(
+            @NotNull String implementationClass,
+            @Nullable String name,
+            @Nullable String configurationPid,
+            @NotNull Set<String> serviceInterfaces,
+            @NotNull Map<String, Object> properties,
+            @NotNull List<Map<String, String>> references,
+            @Nullable String activateMethodName,
+            @Nullable String deactivateMethodName,
+            @Nullable String modifiedMethodName) {
+        this.implementationClass = implementationClass;
+        this.name = name;
+        this.configurationPid = configurationPid;
+        this.serviceInterfaces = Collections.unmodifiableSet(new LinkedHashSet<>(serviceInterfaces));
+        this.properties = Collections.unmodifiableMap(properties);
+        this.references = Collections.unmodifiableList(references);
+        this.activateMethodName = activateMethodName;
+        this.deactivateMethodName = deactivateMethodName;
+        this.modifiedMethodName = modifiedMethodName;
+    }
+
+    public @NotNull String getImplementationClass() {
+        return implementationClass;
+    }
+
+    public @Nullable String getName() {
+        return name;
+    }
+
+    public @Nullable String getConfigurationPid() {
+        return configurationPid;
+    }
+
+    public @NotNull Set<String> getServiceInterfaces() {
+        return serviceInterfaces;
+    }
+
+    public @NotNull Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    public @NotNull List<Map<String, String>> getReferences() {
+        return references;
+    }
+
+    public @Nullable String getActivateMethodName() {
+        return activateMethodName;
+    }
+
+    public @Nullable String getDeactivateMethodName() {
+        return deactivateMethodName;
+    }
+
+    public @Nullable String getModifiedMethodName() {
+        return modifiedMethodName;
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary file storing the parsed component descriptors, to be reused by other JVMs (e.g. forked test JVMs)
+ * running with the same classpath.
+ * The file contains a key calculated from all classpath entries containing SCR metadata (path plus last
+ * modification date and size of the JAR files or SCR metadata XML documents). If the key does not match the
+ * current classpath, the file content is ignored.
+ */
+final class ComponentDescriptorCacheFile {
+
+    private static final int MAGIC = 0x4F534D43;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+    private static final byte TYPE_STRING_ARRAY = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(ComponentDescriptorCacheFile.class);
+
+    private final Path file;
+
+    /**
+     * @param file Cache file
+     */
+    ComponentDescriptorCacheFile(@NotNull Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Calculates the key for the classpath resources with the given path.
+     * @param resourcePath Resource path (e.g. OSGI-INF)
+     * @return Key, or null if the key cannot be calculated for the classpath entries
+     */
+    static @Nullable String buildClasspathKey(@NotNull String resourcePath) {
+        try {
+            StringBuilder key = new StringBuilder();
+            Enumeration<URL> resourceUrls =
+                    ComponentDescriptorCacheFile.class.getClassLoader().getResources(resourcePath);
+            while (resourceUrls.hasMoreElements()) {
+                URL resourceUrl = resourceUrls.nextElement();
+                if (StringUtils.equals(resourceUrl.getProtocol(), "jar")) {
+                    Path jarFile = Paths.get(new URI(StringUtils.substringBefore(resourceUrl.getPath(), "!/")));
+                    appendFile(key, jarFile);
+                } else if (StringUtils.equals(resourceUrl.getProtocol(), "file")) {
+                    Path directory = Paths.get(resourceUrl.toURI());
+                    key.append(directory).append('\n');
+                    for (Path xmlFile : getXmlFiles(directory)) {
+                        appendFile(key, xmlFile);
+                    }
+                } else {
+                    log.debug("Unsupported classpath entry for SCR metadata cache: {}", resourceUrl);
+                    return null;
+                }
+            }
+            return sha256(key.toString());
+        } catch (IOException | URISyntaxException | IllegalArgumentException ex) {
+            log.debug("Unable to calculate classpath key for SCR metadata cache.", ex);
+            return null;
+        }
+    }
+
+    private static List<Path> getXmlFiles(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(path -> StringUtils.endsWith(path.toString(), ".xml"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void appendFile(StringBuilder key, Path path) throws IOException {
+        key.append(path)
+                .append('|')
+                .append(Files.getLastModifiedTime(path).toMillis())
+                .append('|')
+                .append(Files.size(path))
+                .append('\n');
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not supported.", ex);
+        }
+    }
+
+    /**
+     * Reads the component descriptors from the cache file.
+     * @param key Expected classpath key
+     * @return Component descriptors by implementation class, or null if the file does not exist,
+     *         is not readable or was written for a different key
+     */
+    @Nullable
+    Map<String, ComponentDescriptor> read(@NotNull String key) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !StringUtils.equals(in.readUTF(), key)) {
+                log.debug("SCR metadata cache file {} is outdated.", file);
+                return null;
+            }
+            int count = in.readInt();
+            Map<String, ComponentDescriptor> descriptors = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                ComponentDescriptor descriptor = readDescriptor(in);
+                descriptors.put(descriptor.getImplementationClass(), descriptor);
+            }
+            return descriptors;
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Unable to read SCR metadata cache file " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the component descriptors to the cache file.
+     * The file is written to a temporary file first and then moved, so concurrent readers never see a partial file.
+     * @param key Classpath key
+     * @param descriptors Component descriptors by implementation class
+     */
+    void write(@NotNull String key, @NotNull Map<String, ComponentDescriptor> descriptors) {
+        Path tempFile = null;
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                out.writeInt(descriptors.size());
+                for (ComponentDescriptor descriptor : descriptors.values()) {
+                    writeDescriptor(out, descriptor);
+                }
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to write SCR metadata cache file " + file, ex);
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ex2) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static ComponentDescriptor readDescriptor(DataInputStream in) throws IOException {
+        String implementationClass = in.readUTF();
+        String name = readNullableString(in);
+        String configurationPid = readNullableString(in);
+        String activateMethodName = readNullableString(in);
+        String deactivateMethodName = readNullableString(in);
+        String modifiedMethodName = readNullableString(in);
+
+        int serviceInterfaceCount = in.readInt();
+        Set<String> serviceInterfaces = new LinkedHashSet<>();
+        for (int i = 0; i < serviceInterfaceCount; i++) {
+            serviceInterfaces.add(in.readUTF());
+        }
+
+        int propertyCount = in.readInt();
+        Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; i < propertyCount; i++) {
+            String propertyName = in.readUTF();
+            properties.put(propertyName, readPropertyValue(in));
+        }
+
+        int referenceCount = in.readInt();
+        List<Map<String, String>> references = new ArrayList<>(referenceCount);
+        for (int i = 0; i < referenceCount; i++) {
+            int attributeCount = in.readInt();
+            Map<String, String> attributes = new HashMap<>();
+            for (int j = 0; j < attributeCount; j++) {
+                String attributeName = in.readUTF();
+                attributes.put(attributeName, in.readUTF());
+            }
+            references.add(Collections.unmodifiableMap(attributes));
+        }
+
+        return new ComponentDescriptor(
+                implementationClass,
+                name,
+                configurationPid,
+                serviceInterfaces,
+                properties,
+                references,
+                activateMethodName,
+                deactivateMethodName,
+                modifiedMethodName);
+    }
+
+    private static void writeDescriptor(DataOutputStream out, ComponentDescriptor descriptor) throws IOException {
+        out.writeUTF(descriptor.getImplementationClass());
+        writeNullableString(out, descriptor.getName());
+        writeNullableString(out, descriptor.getConfigurationPid());
+        writeNullableString(out, descriptor.getActivateMethodName());
+        writeNullableString(out, descriptor.getDeactivateMethodName());
+        writeNullableString(out, descriptor.getModifiedMethodName());
+
+        out.writeInt(descriptor.getServiceInterfaces().size());
+        for (String serviceInterface : descriptor.getServiceInterfaces()) {
+            out.writeUTF(serviceInterface);
+        }
+
+        out.writeInt(descriptor.getProperties().size());
+        for (Map.Entry<String, Object> property : descriptor.getProperties().entrySet()) {
+            out.writeUTF(property.getKey());
+            writePropertyValue(out, property.getValue());
+        }
+
+        out.writeInt(descriptor.getReferences().size());
+        for (Map<String, String> attributes : descriptor.getReferences()) {
+            out.writeInt(attributes.size());
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                out.writeUTF(attribute.getKey());
+                out.writeUTF(attribute.getValue());
+            }
+        }
+    }
+
+    private static Object readPropertyValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_STRING:
+                return in.readUTF();
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_STRING_ARRAY:
+                String[] values = new String[in.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = in.readUTF();
+                }
+                return values;
+            default:
+                throw new IOException("Invalid property type: " + type);
+        }
+    }
+
+    private static void writePropertyValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String[]) {
+            String[] values = (String[]) value;
+            out.writeByte(TYPE_STRING_ARRAY);
+            out.writeInt(values.length);
+            for (String item : values) {
+                out.writeUTF(item);
+            }
+        } else {
+            throw new IOException("Unsupported property type: " + value.getClass().getName());
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Streaming parser for SCR metadata XML documents.
+ * Extracts the component descriptors from a document in a single pass without building a DOM.
+ * Each element containing an <code>implementation</code> element with a class attribute is treated as component.
+ */
+final class ComponentDescriptorParser {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private ComponentDescriptorParser() {
+        // static methods only
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Parse all component descriptors from the given SCR metadata XML document.
+     * @param inputStream Input stream of XML document
+     * @param path Path of the XML document (used for error messages)
+     * @return Component descriptors in document order
+     */
+    static @NotNull List<ComponentDescriptor> parse(@NotNull InputStream inputStream, @NotNull String path) {
+        List<ComponentDescriptor> descriptors = new ArrayList<>();
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+            Deque<ElementFrame> elements = new ArrayDeque<>();
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        elements.push(new ElementFrame(reader));
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (!elements.isEmpty()) {
+                            elements.peek().appendText(reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        ElementFrame element = elements.pop();
+                        ComponentDescriptor descriptor = element.toComponentDescriptor();
+                        if (descriptor != null) {
+                            descriptors.add(descriptor);
+                        } else if (!elements.isEmpty()) {
+                            elements.peek().addChild(element);
+                        }
+                        break;
+                    default:
+                        // ignore
+                }
+            }
+        } catch (XMLStreamException ex) {
+            throw new RuntimeException("Unable to read classpath resource: " + path, ex);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ex) {
+                    // ignore
+                }
+            }
+        }
+        return descriptors;
+    }
+
+    /**
+     * Collects the data of an XML element and its direct children relevant for component descriptors.
+     */
+    private static final class ElementFrame {
+
+        private final String name;
+        private final Map<String, String> attributes;
+        private StringBuilder text;
+        private String implementationClass;
+        private boolean implementationFound;
+        private final Set<String> serviceInterfaces = new LinkedHashSet<>();
+        private final Map<String, Object> properties = new HashMap<>();
+        private final Map<String, Object> multiValueProperties = new HashMap<>();
+        private final List<Map<String, String>> references = new ArrayList<>();
+
+        ElementFrame(XMLStreamReader reader) {
+            this.name = reader.getLocalName();
+            int attributeCount = reader.getAttributeCount();
+            if (attributeCount == 0) {
+                this.attributes = Collections.emptyMap();
+            } else {
+                this.attributes = new HashMap<>();
+                for (int i = 0; i < attributeCount; i++) {
+                    this.attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                }
+            }
+        }
+
+        void appendText(String value) {
+            if (text == null) {
+                text = new StringBuilder();
+            }
+            text.append(value);
+        }
+
+        boolean hasText() {
+            return text != null && text.length() > 0;
+        }
+
+        void addChild(ElementFrame child) {
+            switch (child.name) {
+                case "implementation":
+                    if (!implementationFound) {
+                        implementationFound = true;
+                        implementationClass = child.attributes.get("class");
+                    }
+                    break;
+                case "service":
+                    serviceInterfaces.addAll(child.serviceInterfaces);
+                    break;
+                case "provide":
+                    if (!"service".equals(name)) {
+                        // only provide elements nested in a service element declare service interfaces
+                        break;
+                    }
+                    String serviceInterface = child.attributes.get("interface");
+                    if (StringUtils.isNotBlank(serviceInterface)) {
+                        serviceInterfaces.add(serviceInterface);
+                    }
+                    break;
+                case "property":
+                    String propertyName = child.attributes.get("name");
+                    if (StringUtils.isNotEmpty(propertyName)) {
+                        String value = child.attributes.get("value");
+                        if (value != null) {
+                            properties.put(propertyName, toPropertyValue(child.attributes.get("type"), value));
+                        }
+                        if (child.hasText()) {
+                            multiValueProperties.put(propertyName, toPropertyValues(child.text.toString()));
+                        }
+                    }
+                    break;
+                case "reference":
+                    if (StringUtils.isNotEmpty(child.attributes.get("name"))) {
+                        references.add(Collections.unmodifiableMap(child.attributes));
+                    }
+                    break;
+                default:
+                    // ignore
+            }
+        }
+
+        ComponentDescriptor toComponentDescriptor() {
+            if (StringUtils.isBlank(implementationClass)) {
+                return null;
+            }
+
+            // multi-value properties defined as text content take precedence over single value properties
+            Map<String, Object> componentProperties = new HashMap<>(properties);
+            componentProperties.putAll(multiValueProperties);
+
+            return new ComponentDescriptor(
+                    implementationClass,
+                    attributes.get("name"),
+                    attributes.get("configuration-pid"),
+                    serviceInterfaces,
+                    componentProperties,
+                    references,
+                    attributes.get("activate"),
+                    attributes.get("deactivate"),
+                    attributes.get("modified"));
+        }
+
+        private static Object toPropertyValue(String type, String value) {
+            if (StringUtils.equals("Integer", type)) {
+                return Integer.parseInt(value);
+            } else if (StringUtils.equals("Long", type)) {
+                return Long.parseLong(value);
+            } else if (StringUtils.equals("Boolean", type)) {
+                return Boolean.parseBoolean(value);
+            } else {
+                return value;
+            }
+        }
+
+        private static String[] toPropertyValues(String textContent) {
+            String[] values = StringUtils.split(StringUtils.trim(textContent), "\n\r");
+            for (int i = 0; i < values.length; i++) {
+                values[i] = StringUtils.trim(values[i]);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * Immutable snapshot of the event delivery metrics of {@link MockEventAdmin}.
+ */
+@ProviderType
+public final class EventAdminMetrics {
+
+    private final long postedEvents;
+    private final long sentEvents;
+    private final long droppedEvents;
+    private final long queueDepth;
+    private final long maxQueueDepth;
+    private final long handlerExceptions;
+    private final LatencyHistogram handlingTime;
+    private final List<HandlerMetrics> handlerMetrics;
+
+    EventAdminMetrics(
+            long postedEvents,
+            long sentEvents,
+            long droppedEvents,
+            long queueDepth,
+            long maxQueueDepth,
+            long handlerExceptions,
+            LatencyHistogram handlingTime,
+            List<HandlerMetrics> handlerMetrics) {
+        this.postedEvents = postedEvents;
+        this.sentEvents = sentEvents;
+        this.droppedEvents = droppedEvents;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.handlerExceptions = handlerExceptions;
+        this.handlingTime = handlingTime;
+        this.handlerMetrics = List.copyOf(handlerMetrics);
+    }
+
+    /**
+     * @return Number of events sent asynchronously via {@link MockEventAdmin#postEvent(org.osgi.service.event.Event)}
+     */
+    public long getPostedEvents() {
+        return postedEvents;
+    }
+
+    /**
+     * @return Number of events sent synchronously via {@link MockEventAdmin#sendEvent(org.osgi.service.event.Event)}
+     */
+    public long getSentEvents() {
+        return sentEvents;
+    }
+
+    /**
+     * @return Number of posted event deliveries to a handler which were discarded, because the event admin
+     *         was deactivated, its executor rejected the delivery, or the handler was unregistered
+     */
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    /**
+     * @return Number of posted event deliveries to handlers which are queued at the time of the snapshot
+     */
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return Maximum number of queued posted event deliveries
+     */
+    public long getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return Number of exceptions thrown by event handlers
+     */
+    public long getHandlerExceptions() {
+        return handlerExceptions;
+    }
+
+    /**
+     * @return Time spent in event handler calls per event, over all handlers. For handlers receiving posted events
+     *         in batches, the time of each batch call is split evenly over the events of the batch.
+     */
+    public @NotNull LatencyHistogram getHandlingTime() {
+        return handlingTime;
+    }
+
+    /**
+     * @return Metrics of the currently registered event handlers, in service ranking order
+     */
+    public @NotNull List<HandlerMetrics> getHandlerMetrics() {
+        return handlerMetrics;
+    }
+
+    /**
+     * @param eventHandler Event handler
+     * @return Metrics of the given event handler, or null if it is not registered
+     */
+    public @Nullable HandlerMetrics getHandlerMetrics(@NotNull EventHandler eventHandler) {
+        for (HandlerMetrics item : handlerMetrics) {
+            if (item.getEventHandler() == eventHandler) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "EventAdminMetrics[posted=" + postedEvents + ",sent=" + sentEvents + ",dropped=" + droppedEvents
+                + ",queueDepth=" + queueDepth + ",maxQueueDepth=" + maxQueueDepth + ",handlerExceptions="
+                + handlerExceptions + ",handlingTime=" + handlingTime + "]";
+    }
+
+    /**
+     * Immutable snapshot of the metrics of a single event handler.
+     */
+    @ProviderType
+    public static final class HandlerMetrics {
+
+        private final EventHandler eventHandler;
+        private final long exceptions;
+        private final LatencyHistogram handlingTime;
+
+        HandlerMetrics(EventHandler eventHandler, long exceptions, LatencyHistogram handlingTime) {
+            this.eventHandler = eventHandler;
+            this.exceptions = exceptions;
+            this.handlingTime = handlingTime;
+        }
+
+        /**
+         * @return Event handler
+         */
+        public @NotNull EventHandler getEventHandler() {
+            return eventHandler;
+        }
+
+        /**
+         * @return Number of exceptions thrown by the event handler
+         */
+        public long getExceptions() {
+            return exceptions;
+        }
+
+        /**
+         * @return Time spent in calls of this event handler per event, see {@link EventAdminMetrics#getHandlingTime()}
+         */
+        public @NotNull LatencyHistogram getHandlingTime() {
+            return handlingTime;
+        }
+
+        @Override
+        public String toString() {
+            return "HandlerMetrics[eventHandler=" + eventHandler.getClass().getName() + ",exceptions=" + exceptions
+                    + ",handlingTime=" + handlingTime + "]";
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable index of event handlers by their subscribed topics.
+ * <p>
+ * Topics are split into segments separated by <code>/</code> and stored in a trie. A topic ending with
+ * <code>/*</code> (or the topic <code>*</code>) is stored as wildcard entry at the node of its prefix and matches
+ * all topics below this prefix. Other topics containing <code>*</code> are matched with a regular expression.
+ * Items without topics match all events.
+ * </p>
+ * <p>
+ * The resolved items per topic are cached, as the index is rebuilt when the handlers change. The items are
+ * always returned in the order they were given to the index.
+ * </p>
+ * @param <T> Item type
+ */
+final class EventTopicIndex<T> {
+
+    /**
+     * Maximum number of topics for which the resolved items are cached.
+     */
+    static final int MAX_CACHED_TOPICS = 1000;
+
+    private static final Pattern WILDCARD_PATTERN = Pattern.compile("[^*]+|(\\*)");
+
+    private final List<T> items;
+    private final Node root = new Node();
+    private final BitSet allTopicItems = new BitSet();
+    private final List<PatternEntry> patternEntries = new ArrayList<>();
+    private final ConcurrentMap<String, List<T>> resolvedItems = new ConcurrentHashMap<>();
+
+    /**
+     * @param items Items in the order they should be returned
+     * @param topicsProvider Returns the subscribed topics for an item, null or empty array subscribes to all topics
+     */
+    EventTopicIndex(@NotNull List<T> items, @NotNull Function<T, String[]> topicsProvider) {
+        this.items = List.copyOf(items);
+        for (int i = 0; i < this.items.size(); i++) {
+            String[] topics = topicsProvider.apply(this.items.get(i));
+            if (topics == null || topics.length == 0) {
+                allTopicItems.set(i);
+            } else {
+                for (String topic : topics) {
+                    addTopic(topic, i);
+                }
+            }
+        }
+    }
+
+    private void addTopic(String topic, int index) {
+        int wildcardIndex = topic.indexOf('*');
+        if (wildcardIndex < 0) {
+            getOrCreateNode(topic).exactItems.set(index);
+        } else if (topic.equals("*")) {
+            root.wildcardItems.set(index);
+        } else if (wildcardIndex == topic.length() - 1 && topic.endsWith("/*")) {
+            getOrCreateNode(topic.substring(0, topic.length() - 2)).wildcardItems.set(index);
+        } else {
+            // wildcard within a segment or in the middle of the topic
+            patternEntries.add(new PatternEntry(toWildcardPattern(topic), index));
+        }
+    }
+
+    private Node getOrCreateNode(String path) {
+        Node node = root;
+        for (String segment : path.split("/", -1)) {
+            node = node.children.computeIfAbsent(segment, key -> new Node());
+        }
+        return node;
+    }
+
+    /**
+     * @return All items in the order they were given to the index
+     */
+    @NotNull
+    List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @param topic Event topic
+     * @return Items subscribed to the given topic
+     */
+    @NotNull
+    List<T> resolve(@Nullable String topic) {
+        if (topic == null) {
+            return getItems(allTopicItems);
+        }
+        List<T> result = resolvedItems.get(topic);
+        if (result == null) {
+            result = getItems(match(topic));
+            if (resolvedItems.size() >= MAX_CACHED_TOPICS) {
+                // event topics used in unit tests are mostly static, so simply start over when the limit is reached
+                resolvedItems.clear();
+            }
+            resolvedItems.put(topic, result);
+        }
+        return result;
+    }
+
+    private BitSet match(String topic) {
+        BitSet matches = (BitSet) allTopicItems.clone();
+        matches.or(root.wildcardItems);
+        String[] segments = topic.split("/", -1);
+        Node node = root;
+        for (int i = 0; i < segments.length && node != null; i++) {
+            node = node.children.get(segments[i]);
+            if (node != null) {
+                if (i < segments.length - 1) {
+                    matches.or(node.wildcardItems);
+                } else {
+                    matches.or(node.exactItems);
+                }
+            }
+        }
+        for (PatternEntry entry : patternEntries) {
+            if (!matches.get(entry.index) && entry.pattern.matcher(topic).matches()) {
+                matches.set(entry.index);
+            }
+        }
+        return matches;
+    }
+
+    private List<T> getItems(BitSet indexes) {
+        if (indexes.isEmpty()) {
+            return List.of();
+        }
+        List<T> result = new ArrayList<>(indexes.cardinality());
+        for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+            result.add(items.get(i));
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * Converts a wildcard string with * to a regex pattern (from http://stackoverflow.com/questions/24337657/wildcard-matching-in-java)
+     * @param wildcard
+     * @return Regexp pattern
+     */
+    private static Pattern toWildcardPattern(String wildcard) {
+        Matcher matcher = WILDCARD_PATTERN.matcher(wildcard);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            if (matcher.group(1) != null) matcher.appendReplacement(result, ".*");
+            else matcher.appendReplacement(result, "\\\\Q" + matcher.group(0) + "\\\\E");
+        }
+        matcher.appendTail(result);
+        return Pattern.compile(result.toString());
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final BitSet exactItems = new BitSet();
+        private final BitSet wildcardItems = new BitSet();
+    }
+
+    private static final class PatternEntry {
+        private final Pattern pattern;
+        private final int index;
+
+        PatternEntry(Pattern pattern, int index) {
+            this.pattern = pattern;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads and writes a resolved field via method handles.
+ * The field is made accessible once, so repeated reference injections skip the access checks of core reflection.
+ * Final fields cannot be written via method handles, they are written via core reflection instead.
+ */
+final class FieldInvoker {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    FieldInvoker(@NotNull Field field) {
+        field.setAccessible(true);
+        this.field = field;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        boolean staticField = Modifier.isStatic(field.getModifiers());
+        try {
+            MethodHandle fieldGetter = lookup.unreflectGetter(field);
+            if (staticField) {
+                fieldGetter = MethodHandles.dropArguments(fieldGetter, 0, Object.class);
+            }
+            this.getter = fieldGetter.asType(GETTER_TYPE);
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(
+                    "Unable to access field '" + field.getName() + "' for class "
+                            + field.getDeclaringClass().getName(),
+                    ex);
+        }
+        MethodHandle fieldSetter;
+        try {
+            fieldSetter = lookup.unreflectSetter(field);
+            if (staticField) {
+                fieldSetter = MethodHandles.dropArguments(fieldSetter, 0, Object.class);
+            }
+            fieldSetter = fieldSetter.asType(SETTER_TYPE);
+        } catch (IllegalAccessException ex) {
+            // final field
+            fieldSetter = null;
+        }
+        this.setter = fieldSetter;
+    }
+
+    public @NotNull String getName() {
+        return field.getName();
+    }
+
+    public @NotNull Class<?> getType() {
+        return field.getType();
+    }
+
+    /**
+     * Get field value.
+     * @param target Target object
+     * @return Field value
+     */
+    public @Nullable Object get(@NotNull Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Throwable ex) {
+            throw new RuntimeException(
+                    "Unable to get field '" + field.getName() + "' for class "
+                            + target.getClass().getName(),
+                    ex);
+        }
+    }
+
+    /**
+     * Set field value.
+     * @param target Target object
+     * @param value Field value
+     */
+    public void set(@NotNull Object target, @Nullable Object value) {
+        try {
+            if (setter != null) {
+                setter.invokeExact(target, value);
+            } else {
+                field.set(target, value);
+            }
+        } catch (Throwable ex) {
+            throw new RuntimeException(
+                    "Unable to set field '" + field.getName() + "' for class "
+                            + target.getClass().getName(),
+                    ex);
+        }
+    }
+}
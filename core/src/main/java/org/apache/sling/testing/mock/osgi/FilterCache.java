@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.felix.framework.FilterImpl;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+
+/**
+ * Bounded cache for parsed OSGi filters.
+ * The same filter strings are evaluated over and over again when looking up services, notifying
+ * service listeners or injecting references with target filters, so they are parsed only once.
+ * The parsed filters are immutable and can be shared between threads and bundle contexts.
+ * <p>
+ * Lookups do not lock. Each cached filter remembers when it was last used, measured in filters parsed so far.
+ * If the cache grows beyond {@link #MAX_SIZE}, one thread evicts the least recently used filters in a batch,
+ * so the size may exceed the limit briefly while other threads add filters concurrently.
+ * </p>
+ */
+final class FilterCache {
+
+    /**
+     * Maximum number of parsed filters kept in the cache.
+     */
+    static final int MAX_SIZE = 2000;
+
+    /**
+     * Number of filters evicted in addition to the ones exceeding {@link #MAX_SIZE}, so the eviction does not
+     * have to run again for each new filter.
+     */
+    static final int EVICTION_BATCH_SIZE = MAX_SIZE / 10;
+
+    private static final ConcurrentMap<String, CachedFilter> CACHE = new ConcurrentHashMap<>();
+    private static final AtomicLong CLOCK = new AtomicLong();
+    private static final AtomicBoolean EVICTING = new AtomicBoolean();
+    private static final LongAdder HIT_COUNT = new LongAdder();
+    private static final LongAdder MISS_COUNT = new LongAdder();
+
+    private FilterCache() {
+        // static methods only
+    }
+
+    /**
+     * Get parsed filter from cache, or parse and cache it if not cached yet.
+     * @param filter Filter string
+     * @return Parsed filter
+     * @throws InvalidSyntaxException If the filter string is invalid
+     */
+    static @NotNull Filter getFilter(@NotNull String filter) throws InvalidSyntaxException {
+        CachedFilter cached = CACHE.get(filter);
+        if (cached != null) {
+            cached.lastAccess = CLOCK.get();
+            HIT_COUNT.increment();
+            return cached.filter;
+        }
+        MISS_COUNT.increment();
+        // parsing the same filter twice concurrently is harmless
+        Filter result = new FilterImpl(filter);
+        CachedFilter existing = CACHE.putIfAbsent(filter, new CachedFilter(result, CLOCK.incrementAndGet()));
+        if (existing != null) {
+            return existing.filter;
+        }
+        if (CACHE.size() > MAX_SIZE) {
+            evict();
+        }
+        return result;
+    }
+
+    /**
+     * Evicts the least recently used filters, unless another thread is evicting already.
+     */
+    private static void evict() {
+        if (!EVICTING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long[] lastAccesses = CACHE.values().stream()
+                    .mapToLong(cached -> cached.lastAccess)
+                    .toArray();
+            int evictCount = lastAccesses.length - MAX_SIZE + EVICTION_BATCH_SIZE;
+            if (evictCount <= EVICTION_BATCH_SIZE) {
+                return;
+            }
+            Arrays.sort(lastAccesses);
+            long threshold = lastAccesses[Math.min(evictCount, lastAccesses.length) - 1];
+            CACHE.values().removeIf(cached -> cached.lastAccess <= threshold);
+        } finally {
+            EVICTING.set(false);
+        }
+    }
+
+    /**
+     * @param filter Filter string
+     * @return true if the parsed filter is cached
+     */
+    static boolean contains(@NotNull String filter) {
+        return CACHE.containsKey(filter);
+    }
+
+    /**
+     * @return Number of parsed filters currently cached
+     */
+    static int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * @return Number of filter lookups served from the cache
+     */
+    static long getHitCount() {
+        return HIT_COUNT.sum();
+    }
+
+    /**
+     * @return Number of filter lookups that required parsing the filter string
+     */
+    static long getMissCount() {
+        return MISS_COUNT.sum();
+    }
+
+    private static final class CachedFilter {
+
+        private final Filter filter;
+        private volatile long lastAccess;
+
+        CachedFilter(Filter filter, long lastAccess) {
+            this.filter = filter;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.time.Duration;
+
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Immutable snapshot of recorded latencies. Percentiles are reported as the upper bound of the
+ * histogram bucket they fall into, limited to the maximum recorded value, so they have a relative error below 7%.
+ */
+@ProviderType
+public final class LatencyHistogram {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    LatencyHistogram(long[] counts, long sum, long max) {
+        this.counts = counts;
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        this.count = total;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * @return Number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Maximum recorded value
+     */
+    public @NotNull Duration getMax() {
+        return Duration.ofNanos(max);
+    }
+
+    /**
+     * @return Mean of the recorded values
+     */
+    public @NotNull Duration getMean() {
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(sum / count);
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100, e.g. 99 for the p99 value
+     * @return Value below or equal to which the given percentage of recorded values falls,
+     *         or zero if no values are recorded
+     */
+    public @NotNull Duration getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(LatencyRecorder.bucketUpperBound(i), max));
+            }
+        }
+        return Duration.ofNanos(max);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + count + ",mean=" + getMean() + ",p50=" + getPercentile(50) + ",p99="
+                + getPercentile(99) + ",max=" + getMax() + "]";
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves component descriptors on demand, parsing only the SCR metadata XML documents
+ * that belong to the requested implementation class.
+ * <p>
+ * Tools like bnd name the SCR metadata documents after the component, which defaults to the
+ * implementation class name (<code>OSGI-INF/&lt;class name&gt;.xml</code>). So the documents
+ * are looked up by name first, at the default location and at the locations declared in the
+ * <code>Service-Component</code> bundle headers. Only if no descriptor is found this way, the documents
+ * declared in the <code>Service-Component</code> header of the classpath entry containing the class are parsed,
+ * once per classpath entry. This covers documents with a fixed name (e.g. <code>serviceComponents.xml</code>)
+ * and documents named after another class than their implementation class. Classes without descriptor
+ * are remembered, so they are not looked up again.
+ * </p>
+ * <p>
+ * Documents neither named after their implementation class nor declared with an explicit path in the
+ * <code>Service-Component</code> header of their classpath entry (e.g. declared with wildcards, or not declared
+ * at all) are only found if the classpath scan is enabled: then all documents on the classpath are indexed once
+ * by the implementation classes they declare, with a plain text search, and the documents declaring the requested
+ * class are parsed. The scan costs about as much as the eager mode, so it is disabled by default.
+ * </p>
+ * <p>
+ * If several documents declare the same implementation class, the lazy mode may pick another descriptor
+ * than the eager mode: a document named after the class always wins, otherwise the descriptor from the
+ * last document in alphabetical path order is used. The eager mode uses the last document in classpath
+ * scan order.
+ * </p>
+ */
+final class LazyComponentDescriptorResolver {
+
+    private static final Pattern IMPLEMENTATION_CLASS_PATTERN =
+            Pattern.compile("<(?:[\\w-]+:)?implementation\\s[^>]*?class\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private static final Logger log = LoggerFactory.getLogger(LazyComponentDescriptorResolver.class);
+
+    private final boolean classpathScan;
+    private final ClassLoader classLoader;
+    private final Map<String, List<String>> pathsByBaseName = new HashMap<>();
+    private final Set<String> parsedPaths = new HashSet<>();
+    private final Set<String> parsedClasspathEntries = new HashSet<>();
+    private final Map<String, ComponentDescriptor> descriptors = new HashMap<>();
+    private final Set<String> classesWithoutDescriptor = new HashSet<>();
+    private Map<String, List<String>> pathsByImplementationClass;
+
+    /**
+     * @param declaredPaths Paths of SCR metadata XML documents declared in <code>Service-Component</code> headers
+     * @param classpathScan Index all SCR metadata XML documents on the classpath, if no descriptor is found
+     *            in the documents named after the class or declared in its classpath entry
+     */
+    LazyComponentDescriptorResolver(@NotNull Collection<String> declaredPaths, boolean classpathScan) {
+        this(declaredPaths, classpathScan, LazyComponentDescriptorResolver.class.getClassLoader());
+    }
+
+    /**
+     * @param declaredPaths Paths of SCR metadata XML documents declared in <code>Service-Component</code> headers
+     * @param classpathScan Index all SCR metadata XML documents on the classpath, if no descriptor is found
+     *            in the documents named after the class or declared in its classpath entry
+     * @param classLoader Class loader to look up the classpath entries of the implementation classes
+     */
+    LazyComponentDescriptorResolver(
+            @NotNull Collection<String> declaredPaths, boolean classpathScan, @NotNull ClassLoader classLoader) {
+        this.classpathScan = classpathScan;
+        this.classLoader = classLoader;
+        for (String path : declaredPaths) {
+            // wildcard declarations cannot be resolved without scanning, they are covered by the classpath scan
+            if (!StringUtils.contains(path, '*')) {
+                addPath(StringUtils.removeStart(path, "/"));
+            }
+        }
+    }
+
+    /**
+     * Get component descriptor for the given implementation class, parsing the relevant
+     * SCR metadata XML documents if not done already.
+     * @param className Implementation class name
+     * @return Component descriptor or null if not defined
+     */
+    synchronized @Nullable ComponentDescriptor get(@NotNull String className) {
+        ComponentDescriptor descriptor = descriptors.get(className);
+        if (descriptor != null || classesWithoutDescriptor.contains(className)) {
+            return descriptor;
+        }
+
+        // documents named after the class
+        parseDocumentsNamedAfter(className);
+        descriptor = descriptors.get(className);
+        if (descriptor != null) {
+            return descriptor;
+        }
+
+        // documents declared in the manifest of the classpath entry containing the class
+        parseDocumentsDeclaredInClasspathEntryOf(className);
+        descriptor = descriptors.get(className);
+        if (descriptor != null) {
+            return descriptor;
+        }
+
+        // documents declaring the class, found via the classpath index
+        if (classpathScan) {
+            for (String path : getPathsByImplementationClass().getOrDefault(className, List.of())) {
+                parseDocument(path);
+            }
+            descriptor = descriptors.get(className);
+        }
+        if (descriptor == null) {
+            classesWithoutDescriptor.add(className);
+        }
+        return descriptor;
+    }
+
+    /**
+     * @return Number of component descriptors parsed so far
+     */
+    synchronized int getParsedDescriptorCount() {
+        return descriptors.size();
+    }
+
+    private void parseDocumentsNamedAfter(String className) {
+        parseDocument(OsgiMetadataUtil.METADATA_PATH + "/" + className + ".xml");
+        for (String path : pathsByBaseName.getOrDefault(className, List.of())) {
+            parseDocument(path);
+        }
+    }
+
+    private void parseDocument(String path) {
+        if (parsedPaths.add(path)) {
+            OsgiMetadataUtil.parseMetadataDocuments(descriptors, path);
+        }
+    }
+
+    /**
+     * Parses the documents declared in the <code>Service-Component</code> header of the classpath entry
+     * (directory or JAR file) the class is loaded from, once per classpath entry.
+     * @param className Implementation class name
+     */
+    private void parseDocumentsDeclaredInClasspathEntryOf(String className) {
+        String classResourcePath = className.replace('.', '/') + ".class";
+        URL classUrl = classLoader.getResource(classResourcePath);
+        if (classUrl == null) {
+            return;
+        }
+        String classUrlString = classUrl.toString();
+        if (!StringUtils.endsWith(classUrlString, classResourcePath)) {
+            return;
+        }
+        String classpathEntry = StringUtils.removeEnd(classUrlString, classResourcePath);
+        if (!parsedClasspathEntries.add(classpathEntry)) {
+            return;
+        }
+        Manifest manifest;
+        try (InputStream is = new URL(classpathEntry + JarFile.MANIFEST_NAME).openStream()) {
+            manifest = new Manifest(is);
+        } catch (IOException ex) {
+            // classpath entry without manifest, e.g. a classes directory
+            return;
+        }
+        for (String path : ManifestScanner.getValues(manifest, OsgiMetadataUtil.SERVICE_COMPONENT_HEADER)) {
+            if (StringUtils.contains(path, '*')) {
+                continue;
+            }
+            String documentUrl = classpathEntry + StringUtils.removeStart(path, "/");
+            try (InputStream is = new URL(documentUrl).openStream()) {
+                for (ComponentDescriptor descriptor : ComponentDescriptorParser.parse(is, documentUrl)) {
+                    descriptors.put(descriptor.getImplementationClass(), descriptor);
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Error reading SCR metadata XML document from " + documentUrl, ex);
+            }
+        }
+    }
+
+    private void addPath(String path) {
+        pathsByBaseName
+                .computeIfAbsent(getBaseName(path), key -> new ArrayList<>())
+                .add(path);
+    }
+
+    private static String getBaseName(String path) {
+        return StringUtils.removeEnd(StringUtils.substringAfterLast("/" + path, "/"), ".xml");
+    }
+
+    /**
+     * Scans the classpath once and indexes the SCR metadata XML documents by the implementation classes they
+     * declare. The paths of each class are sorted alphabetically, so the result does not depend on the
+     * classpath scan order.
+     * @return Paths by implementation class name
+     */
+    private Map<String, List<String>> getPathsByImplementationClass() {
+        if (pathsByImplementationClass == null) {
+            List<String> paths = new ArrayList<>(OsgiMetadataUtil.getMetadataResourcePaths());
+            Collections.sort(paths);
+            Map<String, List<String>> index = new HashMap<>();
+            for (String path : paths) {
+                for (String className : getImplementationClasses(path)) {
+                    List<String> classPaths = index.computeIfAbsent(className, key -> new ArrayList<>());
+                    if (!classPaths.contains(path)) {
+                        classPaths.add(path);
+                    }
+                }
+            }
+            pathsByImplementationClass = index;
+        }
+        return pathsByImplementationClass;
+    }
+
+    private static List<String> getImplementationClasses(String path) {
+        List<String> classNames = new ArrayList<>();
+        try {
+            Enumeration<URL> resourceUrls =
+                    OsgiMetadataUtil.class.getClassLoader().getResources(path);
+            while (resourceUrls.hasMoreElements()) {
+                try (InputStream is = resourceUrls.nextElement().openStream()) {
+                    Matcher matcher =
+                            IMPLEMENTATION_CLASS_PATTERN.matcher(IOUtils.toString(is, StandardCharsets.UTF_8));
+                    while (matcher.find()) {
+                        classNames.add(StringUtils.trim(matcher.group(1)));
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Error reading SCR metadata XML document from " + path, ex);
+        }
+        return classNames;
+    }
+}
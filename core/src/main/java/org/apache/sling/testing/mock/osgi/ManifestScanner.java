@@ -21,13 +21,16 @@ package org.apache.sling.testing.mock.osgi;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
+import java.util.Collections;
 import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.List;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
@@ -54,36 +57,58 @@ public final class ManifestScanner {
      * @return List of values.
      */
     public static @NotNull Collection<String> getValues(@NotNull final String attributeName) {
-        Set<String> values = new LinkedHashSet<String>();
+        return getValues(attributeName, false);
+    }
+
+    /**
+     * Get all bundle header values stored in MANIFEST.MF files as attributes.
+     * In parallel mode the manifest files are read in parallel on the common ForkJoin pool, but the values
+     * are still collected in the same order as in sequential mode.
+     * @param attributeName Attribute / Bundle header name.
+     * @param parallel Read manifest files in parallel
+     * @return List of values.
+     */
+    static @NotNull Collection<String> getValues(@NotNull final String attributeName, final boolean parallel) {
+        List<URL> urls;
         try {
-            Enumeration<URL> resEnum = ManifestScanner.class.getClassLoader().getResources(JarFile.MANIFEST_NAME);
-            while (resEnum.hasMoreElements()) {
-                try {
-                    URL url = (URL) resEnum.nextElement();
-                    InputStream is = url.openStream();
-                    if (is != null) {
-                        try {
-                            Manifest manifest = new Manifest(is);
-                            Attributes mainAttribs = manifest.getMainAttributes();
-                            String valueList = mainAttribs.getValue(attributeName);
-                            String[] valueArray = StringUtils.split(valueList, ",");
-                            if (valueArray != null) {
-                                for (String value : valueArray) {
-                                    if (!StringUtils.isBlank(value)) {
-                                        values.add(StringUtils.trim(value));
-                                    }
-                                }
-                            }
-                        } finally {
-                            is.close();
-                        }
-                    }
-                } catch (Throwable ex) {
-                    log.warn("Unable to read JAR manifest.", ex);
-                }
-            }
+            urls = Collections.list(ManifestScanner.class.getClassLoader().getResources(JarFile.MANIFEST_NAME));
         } catch (IOException ex) {
             log.warn("Unable to read JAR manifests.", ex);
+            return new LinkedHashSet<String>();
+        }
+        Stream<URL> urlStream = parallel ? urls.parallelStream() : urls.stream();
+        return urlStream
+                .map(url -> getValues(url, attributeName))
+                .flatMap(List::stream)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static List<String> getValues(URL url, String attributeName) {
+        try (InputStream is = url.openStream()) {
+            return getValues(new Manifest(is), attributeName);
+        } catch (Throwable ex) {
+            log.warn("Unable to read JAR manifest.", ex);
+        }
+        return new ArrayList<String>();
+    }
+
+    /**
+     * Get the bundle header values of a single manifest, values separated by "," are returned individually.
+     * @param manifest Manifest
+     * @param attributeName Attribute / Bundle header name.
+     * @return List of values.
+     */
+    static @NotNull List<String> getValues(@NotNull Manifest manifest, @NotNull String attributeName) {
+        List<String> values = new ArrayList<String>();
+        Attributes mainAttribs = manifest.getMainAttributes();
+        String valueList = mainAttribs.getValue(attributeName);
+        String[] valueArray = StringUtils.split(valueList, ",");
+        if (valueArray != null) {
+            for (String value : valueArray) {
+                if (!StringUtils.isBlank(value)) {
+                    values.add(StringUtils.trim(value));
+                }
+            }
         }
         return values;
     }
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Invokes a resolved method via a method handle.
+ * The method is made accessible once, so repeated invocations (e.g. bind and unbind of dynamic references)
+ * skip the access checks and argument boxing of core reflection.
+ */
+final class MethodInvoker {
+
+    private final Method method;
+    private final Class<?>[] parameterTypes;
+    private final MethodHandle handle;
+
+    MethodInvoker(@NotNull Method method) {
+        method.setAccessible(true);
+        this.method = method;
+        this.parameterTypes = method.getParameterTypes();
+        try {
+            // adapt to (Object target, Object[] args)void to allow a single invokeExact call site for all methods
+            MethodHandle methodHandle = MethodHandles.lookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                // static methods have no receiver, ignore the target argument
+                methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+            }
+            this.handle = methodHandle
+                    .asType(methodHandle.type().generic().changeReturnType(void.class))
+                    .asSpreader(Object[].class, parameterTypes.length);
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(
+                    "Unable to access method '" + method.getName() + "' for class "
+                            + method.getDeclaringClass().getName(),
+                    ex);
+        }
+    }
+
+    public @NotNull String getName() {
+        return method.getName();
+    }
+
+    public @NotNull Class<?>[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * Invoke method.
+     * @param target Target object
+     * @param args Arguments matching the parameter types
+     */
+    public void invoke(@NotNull Object target, @NotNull Object[] args) {
+        try {
+            handle.invokeExact(target, args);
+        } catch (Throwable ex) {
+            throw new RuntimeException(
+                    "Unable to invoke method '" + method.getName() + "' for class "
+                            + target.getClass().getName(),
+                    ex);
+        }
+    }
+}
@@ -28,7 +28,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -38,12 +42,15 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.felix.framework.FilterImpl;
 import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.DynamicReference;
+import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.OsgiMetadata;
 import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.Reference;
+import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.ReferencePolicy;
+import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.ReferencePolicyOption;
 import org.apache.sling.testing.mock.osgi.OsgiServiceUtil.ReferenceInfo;
 import org.apache.sling.testing.mock.osgi.OsgiServiceUtil.ServiceInfo;
 import org.jetbrains.annotations.NotNull;
@@ -74,15 +81,35 @@ class MockBundleContext implements BundleContext {
     private final MockBundle bundle;
     private final SortedSet<MockServiceRegistration> registeredServices =
             new ConcurrentSkipListSet<MockServiceRegistration>();
-    private final Map<ServiceListener, Filter> serviceListeners = new ConcurrentHashMap<ServiceListener, Filter>();
+    private final Map<String, SortedSet<MockServiceRegistration>> registeredServicesByClass =
+            new ConcurrentHashMap<>();
+    private final Map<String, SortedSet<MockServiceRegistration>> dependentServicesByClass =
+            new ConcurrentHashMap<>();
+    private final ServiceListenerIndex serviceListeners = new ServiceListenerIndex();
     private final Queue<BundleListener> bundleListeners = new ConcurrentLinkedQueue<BundleListener>();
-    private final ConfigurationAdmin configAdmin = new MockConfigurationAdmin(this);
+    private final MockConfigurationAdmin configAdmin;
+    private final Set<MockServiceRegistration<?>> inheritedRegistrations = ConcurrentHashMap.newKeySet();
+    private final Map<MockServiceRegistration<?>, MockServiceRegistration<?>> parentRegistrations =
+            new ConcurrentHashMap<>();
+    private final Set<MockServiceRegistration<?>> changedInheritedRegistrations = ConcurrentHashMap.newKeySet();
+    private final MockBundleContext parent;
+    private final AtomicInteger batchDepth = new AtomicInteger();
+    private final Set<MockServiceRegistration<?>> deferredRestarts = new LinkedHashSet<>();
     private File dataFileBaseDir;
 
     private final Bundle systemBundle;
 
     private static final Logger log = LoggerFactory.getLogger(MockBundleContext.class);
 
+    private static final Comparator<MockServiceRegistration> REGISTRATION_COMPARATOR_HIGHEST_RANKING_FIRST =
+            new Comparator<MockServiceRegistration>() {
+                @Override
+                public int compare(MockServiceRegistration o1, MockServiceRegistration o2) {
+                    // reverse sort order to get highest ranking first
+                    return o2.getReference().compareTo(o1.getReference());
+                }
+            };
+
     private static final Comparator<ServiceReference> SR_COMPARATOR_HIGHEST_RANKING_FIRST =
             new Comparator<ServiceReference>() {
                 @Override
@@ -92,16 +119,74 @@ class MockBundleContext implements BundleContext {
                 }
             };
 
+    private volatile boolean shutdownParallel = Boolean.getBoolean(MockOsgi.PROPERTY_SHUTDOWN_PARALLEL);
+
     public MockBundleContext() {
         log.debug("Creating MockBundleContext, bundleContext={}", this);
 
+        this.parent = null;
         this.systemBundle = new MockBundle(this, Constants.SYSTEM_BUNDLE_ID);
         this.bundle = new MockBundle(this);
+        this.configAdmin = new MockConfigurationAdmin(this);
 
         // register configuration admin by default
         registerService(ConfigurationAdmin.class.getName(), configAdmin, null);
     }
 
+    private MockBundleContext(MockBundleContext parent) {
+        log.debug("Forking MockBundleContext, bundleContext={}, parent={}", this, parent);
+
+        this.parent = parent;
+        this.systemBundle = new MockBundle(this, Constants.SYSTEM_BUNDLE_ID);
+        this.bundle = new MockBundle(this);
+        this.configAdmin = new MockConfigurationAdmin(this, parent.configAdmin);
+        this.shutdownParallel = parent.shutdownParallel;
+
+        // inherit all services of the parent, the configuration admin is replaced with an overlay
+        for (MockServiceRegistration<?> registration : parent.registeredServices) {
+            if (registration.getService() == parent.configAdmin) {
+                continue;
+            }
+            MockServiceRegistration<?> copy = registration.copyFor(this.bundle, this);
+            this.registeredServices.add(copy);
+            this.inheritedRegistrations.add(copy);
+            this.parentRegistrations.put(copy, registration);
+            indexServiceRegistration(copy);
+        }
+        registerService(ConfigurationAdmin.class.getName(), configAdmin, null);
+    }
+
+    /**
+     * Creates a child bundle context that inherits the services and configurations of this bundle context.
+     * <p>
+     * The service registrations are copied to the child, the component instances are shared. Registering,
+     * unregistering or updating services and configurations in the child does not affect this bundle context:
+     * components inherited from this bundle context that would have to be bound, unbound or restarted because of
+     * such a change are not modified, but re-created in the child. Configurations are copied to the child on first
+     * access. Shutting down the child only deactivates the components created in the child.
+     * </p>
+     * <p>
+     * This bundle context must not be modified while it has active children. Service and bundle listeners
+     * registered in this bundle context are notified about changes in the child as well. When the child is shut
+     * down, they are notified about the services of the child going away and the services of this bundle context
+     * changed in the child coming back, so they see the state of this bundle context again. Listeners registered
+     * in the child are discarded with it.
+     * </p>
+     * @return Child bundle context
+     */
+    @NotNull
+    MockBundleContext fork() {
+        return new MockBundleContext(this);
+    }
+
+    /**
+     * @param shutdownParallel Whether {@link #shutdown()} deactivates independent components in parallel,
+     *            see {@link MockOsgi#PROPERTY_SHUTDOWN_PARALLEL}. Inherited by child bundle contexts forked afterwards.
+     */
+    void setShutdownParallel(boolean shutdownParallel) {
+        this.shutdownParallel = shutdownParallel;
+    }
+
     @Override
     public Bundle getBundle() {
         return this.bundle;
@@ -112,7 +197,7 @@ class MockBundleContext implements BundleContext {
         if (s == null) {
             return new MatchAllFilter();
         } else {
-            return new FilterImpl(s);
+            return FilterCache.getFilter(s);
         }
     }
 
@@ -148,6 +233,7 @@ class MockBundleContext implements BundleContext {
         MockServiceRegistration<?> registration =
                 new MockServiceRegistration<>(this.bundle, clazzes, service, properties, this);
         this.registeredServices.add(registration);
+        indexServiceRegistration(registration);
         handleRefsUpdateOnRegister(registration);
         notifyServiceListeners(ServiceEvent.REGISTERED, registration.getReference());
         return registration;
@@ -167,15 +253,18 @@ class MockBundleContext implements BundleContext {
      */
     private void handleRefsUpdateOnRegister(MockServiceRegistration<?> registration) {
 
+        SortedSet<MockServiceRegistration> dependentServices = getDependentServices(registration);
+        Set<MockServiceRegistration<?>> servicesToRestart = new HashSet<>();
+
         // handle DYNAMIC references to this registration
         List<ReferenceInfo<?>> affectedDynamicReferences =
-                OsgiServiceUtil.getMatchingDynamicReferences(registeredServices, registration);
+                OsgiServiceUtil.getMatchingDynamicReferences(dependentServices, registration);
         for (ReferenceInfo<?> referenceInfo : affectedDynamicReferences) {
             Reference reference = referenceInfo.getReference();
             // Look for a target override
             Object o = referenceInfo
                     .getServiceRegistration()
-                    .getProperties()
+                    .getPropertiesAsMap()
                     .get(reference.getName() + ComponentConstants.REFERENCE_TARGET_SUFFIX);
             if (o instanceof String) {
                 reference = new DynamicReference(reference, (String) o);
@@ -188,11 +277,16 @@ class MockBundleContext implements BundleContext {
                     case MANDATORY_MULTIPLE:
                     case OPTIONAL_MULTIPLE:
                     case OPTIONAL_UNARY:
-                        OsgiServiceUtil.invokeBindMethod(
-                                reference,
-                                referenceInfo.getServiceRegistration().getService(),
-                                new ServiceInfo<>(registration),
-                                this);
+                        if (this.inheritedRegistrations.contains(referenceInfo.getServiceRegistration())) {
+                            // do not modify components shared with the parent bundle context
+                            servicesToRestart.add(referenceInfo.getServiceRegistration());
+                        } else {
+                            OsgiServiceUtil.invokeBindMethod(
+                                    reference,
+                                    referenceInfo.getServiceRegistration().getService(),
+                                    new ServiceInfo<>(registration),
+                                    this);
+                        }
                         break;
                     default:
                         throw new RuntimeException("Unexpected cardinality: " + reference.getCardinality());
@@ -202,8 +296,7 @@ class MockBundleContext implements BundleContext {
 
         // handle STATIC+GREEDY references to this registration
         List<ReferenceInfo<?>> affectedStaticGreedyReferences =
-                OsgiServiceUtil.getMatchingStaticGreedyReferences(registeredServices, registration);
-        Set<MockServiceRegistration<?>> servicesToRestart = new HashSet<>();
+                OsgiServiceUtil.getMatchingStaticGreedyReferences(dependentServices, registration);
         for (ReferenceInfo<?> referenceInfo : affectedStaticGreedyReferences) {
             Reference reference = referenceInfo.getReference();
             if (reference.matchesTargetFilter(registration.getReference())) {
@@ -221,7 +314,7 @@ class MockBundleContext implements BundleContext {
                 }
             }
         }
-        servicesToRestart.forEach(this::restartService);
+        restartServices(servicesToRestart);
     }
 
     void unregisterService(MockServiceRegistration<?> registration) {
@@ -236,6 +329,10 @@ class MockBundleContext implements BundleContext {
 
         boolean wasRemoved = this.registeredServices.remove(registration);
         if (wasRemoved) {
+            if (this.inheritedRegistrations.remove(registration)) {
+                this.changedInheritedRegistrations.add(registration);
+            }
+            unindexServiceRegistration(registration);
             handleRefsUpdateOnUnregister(registration);
             notifyServiceListeners(ServiceEvent.UNREGISTERING, registration.getReference());
         } else {
@@ -243,14 +340,206 @@ class MockBundleContext implements BundleContext {
         }
     }
 
+    /**
+     * Adds the service registration to the lookup index for all service interfaces it exports.
+     * The object classes of a registration are fixed at registration time (they cannot be changed
+     * via {@link ServiceRegistration#setProperties(Dictionary)}), so the index has only to be maintained
+     * on registration and unregistration, and on service ranking changes for the ordering.
+     * @param registration Service registration
+     */
+    private void indexServiceRegistration(MockServiceRegistration<?> registration) {
+        synchronized (registeredServicesByClass) {
+            for (String clazz : registration.getClasses()) {
+                addToIndex(
+                        registeredServicesByClass,
+                        clazz,
+                        registration,
+                        REGISTRATION_COMPARATOR_HIGHEST_RANKING_FIRST);
+            }
+        }
+        for (String referenceInterface : getRebindingReferenceInterfaces(registration)) {
+            addToIndex(dependentServicesByClass, referenceInterface, registration, null);
+        }
+    }
+
+    /**
+     * Removes the service registration from the lookup index.
+     * @param registration Service registration
+     */
+    private void unindexServiceRegistration(MockServiceRegistration<?> registration) {
+        synchronized (registeredServicesByClass) {
+            for (String clazz : registration.getClasses()) {
+                removeFromIndex(registeredServicesByClass, clazz, registration);
+            }
+        }
+        for (String referenceInterface : getRebindingReferenceInterfaces(registration)) {
+            removeFromIndex(dependentServicesByClass, referenceInterface, registration);
+        }
+    }
+
+    /**
+     * Updates the properties of a service registration with a changed service ranking. The position of the
+     * registration in the ranking-ordered lookup index is derived from the current properties, so the index
+     * sets of the registration are rebuilt without it before the update, and published with the re-added
+     * registration afterwards. Concurrent lookups see either the old or the new set, both containing the
+     * registration.
+     * @param registration Service registration
+     * @param propertiesUpdate Updates the service properties
+     */
+    void updateServiceRanking(MockServiceRegistration<?> registration, Runnable propertiesUpdate) {
+        synchronized (this.registeredServicesByClass) {
+            if (!this.registeredServices.contains(registration)) {
+                propertiesUpdate.run();
+                return;
+            }
+            Map<String, SortedSet<MockServiceRegistration>> updatedIndex = new HashMap<>();
+            for (String clazz : registration.getClasses()) {
+                SortedSet<MockServiceRegistration> registrations =
+                        new ConcurrentSkipListSet<>(REGISTRATION_COMPARATOR_HIGHEST_RANKING_FIRST);
+                SortedSet<MockServiceRegistration> currentRegistrations = this.registeredServicesByClass.get(clazz);
+                if (currentRegistrations != null) {
+                    for (MockServiceRegistration<?> item : currentRegistrations) {
+                        if (item != registration) {
+                            registrations.add(item);
+                        }
+                    }
+                }
+                updatedIndex.put(clazz, registrations);
+            }
+            propertiesUpdate.run();
+            for (Map.Entry<String, SortedSet<MockServiceRegistration>> entry : updatedIndex.entrySet()) {
+                entry.getValue().add(registration);
+                this.registeredServicesByClass.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void addToIndex(
+            Map<String, SortedSet<MockServiceRegistration>> index,
+            String key,
+            MockServiceRegistration<?> registration,
+            Comparator<MockServiceRegistration> comparator) {
+        index.compute(key, (k, registrations) -> {
+            SortedSet<MockServiceRegistration> result = registrations;
+            if (result == null) {
+                result = new ConcurrentSkipListSet<>(comparator);
+            }
+            result.add(registration);
+            return result;
+        });
+    }
+
+    private static void removeFromIndex(
+            Map<String, SortedSet<MockServiceRegistration>> index,
+            String key,
+            MockServiceRegistration<?> registration) {
+        index.computeIfPresent(key, (k, registrations) -> {
+            registrations.remove(registration);
+            return registrations.isEmpty() ? null : registrations;
+        });
+    }
+
+    /**
+     * Get the interface names of all references of the registered component that have to be updated
+     * when a matching service comes or goes - that is DYNAMIC or STATIC+GREEDY references.
+     * @param registration Service registration
+     * @return Reference interface names
+     */
+    @SuppressWarnings("null")
+    private static Set<String> getRebindingReferenceInterfaces(MockServiceRegistration<?> registration) {
+        Object service = registration.getService();
+        if (service == null) {
+            return Collections.emptySet();
+        }
+        OsgiMetadata metadata = OsgiMetadataUtil.getMetadata(service.getClass());
+        if (metadata == null) {
+            return Collections.emptySet();
+        }
+        Set<String> referenceInterfaces = new HashSet<>();
+        for (Reference reference : metadata.getReferences()) {
+            if (reference.getPolicy() == ReferencePolicy.DYNAMIC
+                    || reference.getPolicyOption() == ReferencePolicyOption.GREEDY) {
+                referenceInterfaces.add(reference.getInterfaceType());
+            }
+        }
+        return referenceInterfaces;
+    }
+
+    /**
+     * Get all registered services that have a DYNAMIC or STATIC+GREEDY reference to any of the
+     * service interfaces exported by the given registration.
+     * @param registration Service registration
+     * @return Registered services ordered by service ID
+     */
+    SortedSet<MockServiceRegistration> getDependentServices(MockServiceRegistration<?> registration) {
+        SortedSet<MockServiceRegistration> dependentServices = new TreeSet<>();
+        for (String clazz : registration.getClasses()) {
+            SortedSet<MockServiceRegistration> registrations = dependentServicesByClass.get(clazz);
+            if (registrations != null) {
+                dependentServices.addAll(registrations);
+            }
+        }
+        return dependentServices;
+    }
+
+    /**
+     * Runs the given registrations as a batch: services with STATIC+GREEDY references affected by the registrations
+     * are restarted only once after all registrations are applied, instead of once per matching registration.
+     * DYNAMIC references are still bound and service listeners still notified for each registration.
+     * Batches may be nested, the restarts are applied when the outermost batch ends.
+     * @param registrations Registers or unregisters services
+     */
+    void runBatch(@NotNull Runnable registrations) {
+        batchDepth.incrementAndGet();
+        try {
+            registrations.run();
+        } finally {
+            if (batchDepth.decrementAndGet() == 0) {
+                restartDeferredServices();
+            }
+        }
+    }
+
+    private void restartServices(Set<MockServiceRegistration<?>> servicesToRestart) {
+        if (batchDepth.get() > 0) {
+            synchronized (deferredRestarts) {
+                deferredRestarts.addAll(servicesToRestart);
+            }
+        } else {
+            restartRegisteredServices(servicesToRestart);
+        }
+    }
+
+    private void restartDeferredServices() {
+        List<MockServiceRegistration<?>> servicesToRestart;
+        synchronized (deferredRestarts) {
+            servicesToRestart = new ArrayList<>(deferredRestarts);
+            deferredRestarts.clear();
+        }
+        restartRegisteredServices(servicesToRestart);
+    }
+
+    private void restartRegisteredServices(Collection<MockServiceRegistration<?>> servicesToRestart) {
+        for (MockServiceRegistration<?> registration : servicesToRestart) {
+            // skip services that were unregistered in a batch, or already restarted because they depend on
+            // another restarted service
+            if (this.registeredServices.contains(registration)) {
+                restartService(registration);
+            }
+        }
+    }
+
     @SuppressWarnings("null")
     void restartService(@NotNull MockServiceRegistration<?> registration) {
         // get current service properties
         Class<?> serviceClass = registration.getService().getClass();
         Map<String, Object> properties = registration.getPropertiesAsMap();
 
-        // deactivate & unregister service
-        MockOsgi.deactivate(registration.getService(), this);
+        // deactivate & unregister service - components inherited from the parent of a forked bundle context
+        // are still used by the parent, so they are only replaced in this bundle context
+        if (!this.inheritedRegistrations.contains(registration)) {
+            MockOsgi.deactivate(registration.getService(), this);
+        }
         unregisterService(registration);
 
         // newly create and register service
@@ -269,9 +558,12 @@ class MockBundleContext implements BundleContext {
      */
     private void handleRefsUpdateOnUnregister(MockServiceRegistration<?> registration) {
 
+        SortedSet<MockServiceRegistration> dependentServices = getDependentServices(registration);
+        Set<MockServiceRegistration<?>> servicesToRestart = new HashSet<>();
+
         // handle DYNAMIC references to this registration
         List<ReferenceInfo<?>> affectedDynamicReferences =
-                OsgiServiceUtil.getMatchingDynamicReferences(registeredServices, registration);
+                OsgiServiceUtil.getMatchingDynamicReferences(dependentServices, registration);
         for (ReferenceInfo<?> referenceInfo : affectedDynamicReferences) {
             Reference reference = referenceInfo.getReference();
             if (reference.matchesTargetFilter(registration.getReference())) {
@@ -282,11 +574,16 @@ class MockBundleContext implements BundleContext {
                     case OPTIONAL_UNARY:
                         // it is currently not checked if for a MANDATORY_UNARY or MANDATORY_MULTIPLE reference the last
                         // reference is removed
-                        OsgiServiceUtil.invokeUnbindMethod(
-                                reference,
-                                referenceInfo.getServiceRegistration().getService(),
-                                new ServiceInfo<>(registration),
-                                this);
+                        if (this.inheritedRegistrations.contains(referenceInfo.getServiceRegistration())) {
+                            // do not modify components shared with the parent bundle context
+                            servicesToRestart.add(referenceInfo.getServiceRegistration());
+                        } else {
+                            OsgiServiceUtil.invokeUnbindMethod(
+                                    reference,
+                                    referenceInfo.getServiceRegistration().getService(),
+                                    new ServiceInfo<>(registration),
+                                    this);
+                        }
                         break;
                     default:
                         throw new RuntimeException("Unexpected cardinality: " + reference.getCardinality());
@@ -296,8 +593,7 @@ class MockBundleContext implements BundleContext {
 
         // handle STATIC+GREEDY references to this registration
         List<ReferenceInfo<?>> affectedStaticGreedyReferences =
-                OsgiServiceUtil.getMatchingStaticGreedyReferences(registeredServices, registration);
-        Set<MockServiceRegistration<?>> servicesToRestart = new HashSet<>();
+                OsgiServiceUtil.getMatchingStaticGreedyReferences(dependentServices, registration);
         for (ReferenceInfo<?> referenceInfo : affectedStaticGreedyReferences) {
             Reference reference = referenceInfo.getReference();
             if (reference.matchesTargetFilter(registration.getReference())) {
@@ -313,11 +609,22 @@ class MockBundleContext implements BundleContext {
                 }
             }
         }
-        servicesToRestart.forEach(this::restartService);
+        restartServices(servicesToRestart);
     }
 
     @Override
     public ServiceReference getServiceReference(final String clazz) {
+        if (clazz != null) {
+            // the index is ordered by service ranking, so the best match is the first registration
+            SortedSet<MockServiceRegistration> registrations = this.registeredServicesByClass.get(clazz);
+            if (registrations != null) {
+                Iterator<MockServiceRegistration> iterator = registrations.iterator();
+                if (iterator.hasNext()) {
+                    return iterator.next().getReference();
+                }
+            }
+            return null;
+        }
         try {
             ServiceReference[] serviceRefs = getServiceReferences(clazz, null);
             if (serviceRefs != null && serviceRefs.length > 0) {
@@ -343,10 +650,26 @@ class MockBundleContext implements BundleContext {
          * https://docs.osgi.org/specification/osgi.core/7.0.0/framework.api.html#org.osgi.framework.BundleContext.getServiceReferences-String-String-
          * for backward compatibility with previous implementation of osgi-mock we stick with highest-ranking first here
          */
-        Set<ServiceReference> result = new TreeSet<>(SR_COMPARATOR_HIGHEST_RANKING_FIRST);
-        for (MockServiceRegistration serviceRegistration : this.registeredServices) {
-            if (serviceRegistration.matches(clazz, filter)) {
-                result.add(serviceRegistration.getReference());
+        Collection<ServiceReference> result;
+        if (clazz == null) {
+            result = new TreeSet<>(SR_COMPARATOR_HIGHEST_RANKING_FIRST);
+            for (MockServiceRegistration serviceRegistration : this.registeredServices) {
+                if (serviceRegistration.matches(null, filter)) {
+                    result.add(serviceRegistration.getReference());
+                }
+            }
+        } else {
+            // use index to check only registrations exporting the given service interface,
+            // it is already ordered by service ranking
+            SortedSet<MockServiceRegistration> candidates = this.registeredServicesByClass.get(clazz);
+            if (candidates == null) {
+                return null;
+            }
+            result = new ArrayList<>();
+            for (MockServiceRegistration serviceRegistration : candidates) {
+                if (serviceRegistration.matches(clazz, filter)) {
+                    result.add(serviceRegistration.getReference());
+                }
             }
         }
         if (result.isEmpty()) {
@@ -398,7 +721,7 @@ class MockBundleContext implements BundleContext {
     @Override
     public void addServiceListener(final ServiceListener serviceListener, final String filter)
             throws InvalidSyntaxException {
-        serviceListeners.put(serviceListener, createFilter(filter));
+        serviceListeners.add(serviceListener, createFilter(filter), filter);
     }
 
     @Override
@@ -408,11 +731,20 @@ class MockBundleContext implements BundleContext {
 
     void notifyServiceListeners(int eventType, ServiceReference serviceReference) {
         final ServiceEvent event = new ServiceEvent(eventType, serviceReference);
-        for (Map.Entry<ServiceListener, Filter> entry : serviceListeners.entrySet()) {
-            if (entry.getValue() == null || entry.getValue().match(serviceReference)) {
-                entry.getKey().serviceChanged(event);
-            }
+        for (ServiceListener serviceListener : serviceListeners.getMatchingListeners(serviceReference)) {
+            serviceListener.serviceChanged(event);
+        }
+        // listeners of the parent of a forked bundle context see the changes in the child as well
+        if (parent != null) {
+            parent.notifyServiceListeners(eventType, serviceReference);
+        }
+    }
+
+    void notifyServiceModified(MockServiceRegistration<?> registration) {
+        if (this.inheritedRegistrations.contains(registration)) {
+            this.changedInheritedRegistrations.add(registration);
         }
+        notifyServiceListeners(ServiceEvent.MODIFIED, registration.getReference());
     }
 
     @Override
@@ -431,6 +763,9 @@ class MockBundleContext implements BundleContext {
         for (BundleListener bundleListener : bundleListeners) {
             bundleListener.bundleChanged(bundleEvent);
         }
+        if (parent != null) {
+            parent.sendBundleEvent(bundleEvent);
+        }
     }
 
     @Override
@@ -493,20 +828,26 @@ class MockBundleContext implements BundleContext {
     public void shutdown() {
         log.debug("Shutting down MockBundleContext, bundleContext={}", this);
 
-        List<MockServiceRegistration> reversedRegisteredServices = new ArrayList<>(registeredServices);
-        Collections.reverse(reversedRegisteredServices);
-        Set<Object> deactivatedComponents = new HashSet<>();
-        for (MockServiceRegistration<?> serviceRegistration : reversedRegisteredServices) {
-            Object componentInstance = serviceRegistration.getService();
-            if (deactivatedComponents.contains(componentInstance)) {
-                continue;
+        // components inherited from the parent of a forked bundle context are still used by the parent
+        List<MockServiceRegistration> reversedRegisteredServices = new ArrayList<>();
+        for (MockServiceRegistration<?> serviceRegistration : registeredServices) {
+            if (!inheritedRegistrations.contains(serviceRegistration)) {
+                reversedRegisteredServices.add(serviceRegistration);
             }
-            try {
-                MockOsgi.deactivate(componentInstance, this, serviceRegistration.getProperties());
-            } catch (NoScrMetadataException ex) {
-                // ignore, no deactivate method is available then
+        }
+        Collections.reverse(reversedRegisteredServices);
+        if (shutdownParallel) {
+            deactivateComponentsParallel(reversedRegisteredServices);
+        } else {
+            Set<Object> deactivatedComponents = new HashSet<>();
+            for (MockServiceRegistration<?> serviceRegistration : reversedRegisteredServices) {
+                Object componentInstance = serviceRegistration.getService();
+                if (deactivatedComponents.contains(componentInstance)) {
+                    continue;
+                }
+                deactivateComponent(serviceRegistration);
+                deactivatedComponents.add(componentInstance);
             }
-            deactivatedComponents.add(componentInstance);
         }
         if (dataFileBaseDir != null) {
             try {
@@ -515,6 +856,71 @@ class MockBundleContext implements BundleContext {
                 // ignore
             }
         }
+        if (parent != null) {
+            notifyParentServiceListenersOnDiscard();
+        }
+    }
+
+    /**
+     * Notifies the service listeners of the parent of this forked bundle context, which were notified about all
+     * changes in this bundle context, about returning to the services of the parent.
+     */
+    private void notifyParentServiceListenersOnDiscard() {
+        for (MockServiceRegistration<?> registration : registeredServices) {
+            if (!inheritedRegistrations.contains(registration)) {
+                parent.notifyServiceListeners(ServiceEvent.UNREGISTERING, registration.getReference());
+            }
+        }
+        for (MockServiceRegistration<?> registration : changedInheritedRegistrations) {
+            MockServiceRegistration<?> parentRegistration = parentRegistrations.get(registration);
+            if (parentRegistration != null && parent.registeredServices.contains(parentRegistration)) {
+                parent.notifyServiceListeners(
+                        registeredServices.contains(registration) ? ServiceEvent.MODIFIED : ServiceEvent.REGISTERED,
+                        parentRegistration.getReference());
+            }
+        }
+    }
+
+    /**
+     * Deactivates the components in reverse order of their references to each other, independent components
+     * in parallel.
+     * @param registrations Service registrations, the latest registration first
+     */
+    private void deactivateComponentsParallel(List<MockServiceRegistration> registrations) {
+        Map<Object, MockServiceRegistration<?>> registrationsByComponent = new LinkedHashMap<>();
+        Map<Object, Set<String>> serviceInterfacesByComponent = new HashMap<>();
+        for (MockServiceRegistration<?> registration : registrations) {
+            Object componentInstance = registration.getService();
+            registrationsByComponent.putIfAbsent(componentInstance, registration);
+            serviceInterfacesByComponent
+                    .computeIfAbsent(componentInstance, key -> new HashSet<>())
+                    .addAll(registration.getClasses());
+        }
+
+        List<MockServiceRegistration<?>> componentRegistrations = new ArrayList<>(registrationsByComponent.values());
+        List<Set<String>> serviceInterfaces = new ArrayList<>(componentRegistrations.size());
+        List<Set<String>> referenceInterfaces = new ArrayList<>(componentRegistrations.size());
+        for (MockServiceRegistration<?> registration : componentRegistrations) {
+            Object componentInstance = registration.getService();
+            serviceInterfaces.add(serviceInterfacesByComponent.get(componentInstance));
+            referenceInterfaces.add(
+                    componentInstance != null
+                            ? ParallelComponentActivator.getReferenceInterfaces(componentInstance.getClass())
+                            : Collections.emptySet());
+        }
+
+        ParallelComponentActivator.deactivate(
+                componentRegistrations,
+                ParallelComponentActivator.getDependencies(serviceInterfaces, referenceInterfaces),
+                this::deactivateComponent);
+    }
+
+    private void deactivateComponent(MockServiceRegistration<?> serviceRegistration) {
+        try {
+            MockOsgi.deactivate(serviceRegistration.getService(), this, serviceRegistration.getProperties());
+        } catch (NoScrMetadataException ex) {
+            // ignore, no deactivate method is available then
+        }
     }
 
     @Override
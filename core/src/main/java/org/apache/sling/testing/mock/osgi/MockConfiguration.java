@@ -56,6 +56,16 @@ class MockConfiguration implements Configuration {
         this.factoryPid = factoryPid;
     }
 
+    /**
+     * Creates a copy of the given configuration.
+     * @param configuration Configuration
+     */
+    MockConfiguration(MockConfiguration configuration) {
+        this.pid = configuration.pid;
+        this.factoryPid = configuration.factoryPid;
+        this.props = configuration.getProperties();
+    }
+
     @Override
     public String getPid() {
         return pid;
@@ -19,8 +19,11 @@
 package org.apache.sling.testing.mock.osgi;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Filter;
@@ -34,16 +37,59 @@ import org.osgi.service.cm.ConfigurationAdmin;
 class MockConfigurationAdmin implements ConfigurationAdmin {
 
     private final BundleContext bundleContext;
+    private final MockConfigurationAdmin parent;
     private final ConcurrentMap<String, Configuration> configs = new ConcurrentHashMap<>();
 
     MockConfigurationAdmin(final BundleContext bundleContext) {
+        this(bundleContext, null);
+    }
+
+    /**
+     * @param bundleContext Bundle context
+     * @param parent Configuration admin of the parent bundle context of a forked bundle context. Configurations of
+     *            the parent are copied on first access, so changes do not affect the parent.
+     */
+    MockConfigurationAdmin(final BundleContext bundleContext, final MockConfigurationAdmin parent) {
         this.bundleContext = bundleContext;
+        this.parent = parent;
     }
 
     @Override
     public Configuration getConfiguration(final String pid) throws IOException {
-        configs.putIfAbsent(pid, new MockConfiguration(pid));
-        return configs.get(pid);
+        return configs.computeIfAbsent(pid, key -> copyFromParent(key, () -> new MockConfiguration(pid)));
+    }
+
+    private Configuration copyFromParent(final String pid, final Supplier<Configuration> defaultConfiguration) {
+        Configuration parentConfiguration = parent != null ? parent.findConfiguration(pid) : null;
+        if (parentConfiguration instanceof MockConfiguration) {
+            return new MockConfiguration((MockConfiguration) parentConfiguration);
+        }
+        return defaultConfiguration.get();
+    }
+
+    private Configuration findConfiguration(final String pid) {
+        Configuration configuration = configs.get(pid);
+        if (configuration == null && parent != null) {
+            configuration = parent.findConfiguration(pid);
+        }
+        return configuration;
+    }
+
+    private void copyAllFromParent() {
+        if (parent == null) {
+            return;
+        }
+        for (String pid : parent.getPids()) {
+            configs.computeIfAbsent(pid, key -> copyFromParent(key, () -> null));
+        }
+    }
+
+    private Set<String> getPids() {
+        Set<String> pids = new HashSet<>(configs.keySet());
+        if (parent != null) {
+            pids.addAll(parent.getPids());
+        }
+        return pids;
     }
 
     @Override
@@ -54,6 +100,7 @@ class MockConfigurationAdmin implements ConfigurationAdmin {
     @Override
     @SuppressWarnings("squid:S1168")
     public Configuration[] listConfigurations(final String filter) throws IOException, InvalidSyntaxException {
+        copyAllFromParent();
         final Filter filterObject = bundleContext.createFilter(filter);
         final Configuration[] filtered = configs.values().stream()
                 .filter(configuration -> filterObject.match(configuration.getProperties()))
@@ -73,8 +120,7 @@ class MockConfigurationAdmin implements ConfigurationAdmin {
     @Override
     public Configuration getFactoryConfiguration(final String factoryPid, final String name) throws IOException {
         String pid = String.format("%s~%s", factoryPid, name);
-        configs.putIfAbsent(pid, new MockConfiguration(pid, factoryPid));
-        return configs.get(pid);
+        return configs.computeIfAbsent(pid, key -> copyFromParent(key, () -> new MockConfiguration(pid, factoryPid)));
     }
 
     // --- unsupported operations ---
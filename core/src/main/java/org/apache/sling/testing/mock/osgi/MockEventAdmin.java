@@ -18,17 +18,25 @@
  */
 package org.apache.sling.testing.mock.osgi;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
 import org.apache.sling.commons.osgi.Order;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.commons.osgi.ServiceUtil;
+import org.jetbrains.annotations.NotNull;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -45,11 +53,47 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Mock implementation of {@link EventAdmin}.
- * From {@link EventConstants} currently only {@link EventConstants#EVENT_TOPIC} is supported.
+ * From {@link EventConstants} currently only {@link EventConstants#EVENT_TOPIC} and {@link EventConstants#EVENT_FILTER}
+ * are supported.
+ * <p>
+ * Events sent via {@link #postEvent(Event)} are delivered asynchronously by a thread pool. Each event handler
+ * receives the posted events in the order they were posted, while different event handlers are served in parallel
+ * if more than one thread is configured. The thread pool can be configured with the component properties
+ * {@link #PROPERTY_THREAD_POOL_SIZE} and {@link #PROPERTY_VIRTUAL_THREADS}, or with system properties of the
+ * same name which are used as defaults.
+ * </p>
+ * <p>
+ * With {@link #PROPERTY_BATCH_SIZE} batch delivery of posted events is enabled: events posted while a delivery
+ * for the handler is pending are collected and handed over at once to handlers implementing
+ * {@link BatchEventHandler}. Other event handlers receive the events of a batch one by one.
+ * Use {@link #drain(long, TimeUnit)} to wait until all posted events are delivered.
+ * </p>
+ * <p>
+ * Event delivery metrics like event counts and handler latencies are available via {@link #getMetrics()}.
+ * </p>
  */
 @Component(immediate = true, service = EventAdmin.class)
 public final class MockEventAdmin implements EventAdmin {
 
+    /**
+     * Number of threads delivering posted events. Defaults to 1.
+     */
+    public static final String PROPERTY_THREAD_POOL_SIZE =
+            "org.apache.sling.testing.mock.osgi.eventadmin.threadPoolSize";
+
+    /**
+     * Deliver posted events with virtual threads instead of a fixed thread pool. Requires Java 21 or higher,
+     * on older Java versions the fixed thread pool is used. Defaults to false.
+     */
+    public static final String PROPERTY_VIRTUAL_THREADS =
+            "org.apache.sling.testing.mock.osgi.eventadmin.virtualThreads";
+
+    /**
+     * Maximum number of posted events delivered at once to a {@link BatchEventHandler}.
+     * Defaults to 0, which disables batch delivery.
+     */
+    public static final String PROPERTY_BATCH_SIZE = "org.apache.sling.testing.mock.osgi.eventadmin.batchSize";
+
     @Reference(
             name = "eventHandler",
             service = EventHandler.class,
@@ -59,7 +103,21 @@ public final class MockEventAdmin implements EventAdmin {
             unbind = "unbindEventHandler")
     private final Map<Object, EventHandlerItem> eventHandlers = new TreeMap<>();
 
+    /**
+     * Immutable index of the event handlers in ranking order by their topics, distribution of events resolves
+     * the handlers from this index without holding the lock on {@link #eventHandlers}.
+     */
+    private volatile EventTopicIndex<EventHandlerItem> eventHandlerIndex =
+            new EventTopicIndex<>(List.of(), EventHandlerItem::getTopics);
+
+    private final OrderedEventQueue.PendingEvents pendingEvents = new OrderedEventQueue.PendingEvents();
+    private final LongAdder postedEvents = new LongAdder();
+    private final LongAdder sentEvents = new LongAdder();
+    private final LongAdder handlerExceptions = new LongAdder();
+    private final LatencyRecorder handlingTime = new LatencyRecorder();
+
     private ExecutorService asyncHandler;
+    private int batchSize;
     private BundleContext bundleContext;
 
     private static final Logger log = LoggerFactory.getLogger(MockEventAdmin.class);
@@ -67,12 +125,42 @@ public final class MockEventAdmin implements EventAdmin {
     @Activate
     protected void activate(ComponentContext componentContext) {
         this.bundleContext = componentContext.getBundleContext();
-        asyncHandler = Executors.newSingleThreadExecutor();
+        Dictionary<String, Object> props = componentContext.getProperties();
+        int threadPoolSize = PropertiesUtil.toInteger(
+                props.get(PROPERTY_THREAD_POOL_SIZE), Integer.getInteger(PROPERTY_THREAD_POOL_SIZE, 1));
+        boolean virtualThreads = PropertiesUtil.toBoolean(
+                props.get(PROPERTY_VIRTUAL_THREADS), Boolean.getBoolean(PROPERTY_VIRTUAL_THREADS));
+        batchSize = PropertiesUtil.toInteger(
+                props.get(PROPERTY_BATCH_SIZE), Integer.getInteger(PROPERTY_BATCH_SIZE, 0));
+        asyncHandler = newAsyncHandler(threadPoolSize, virtualThreads);
+    }
+
+    private static ExecutorService newAsyncHandler(int threadPoolSize, boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                // available since Java 21
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+                log.warn("Virtual threads are not supported, use thread pool instead: {}", ex.getMessage());
+            }
+        }
+        if (threadPoolSize <= 1) {
+            return Executors.newSingleThreadExecutor();
+        }
+        return Executors.newFixedThreadPool(threadPoolSize);
     }
 
     @Deactivate
     protected void deactivate(ComponentContext componentContext) {
         asyncHandler.shutdownNow();
+        // release posted events which were not delivered yet
+        synchronized (eventHandlers) {
+            for (EventHandlerItem item : eventHandlers.values()) {
+                item.getQueue().clear();
+            }
+        }
     }
 
     @Override
@@ -80,127 +168,238 @@ public final class MockEventAdmin implements EventAdmin {
         if (log.isDebugEnabled()) {
             log.debug("Send event: {}, bundleContext={}", event.getTopic(), this.bundleContext);
         }
-        try {
-            asyncHandler.execute(new Runnable() {
-                @Override
-                public void run() {
-                    distributeEvent(event);
-                }
-            });
-        } catch (RejectedExecutionException ex) {
-            // ignore
-            log.debug("Ignore rejected execution: " + ex.getMessage(), ex);
-            ;
+        postedEvents.increment();
+        // enqueue the event for each matching handler, each handler queue delivers its events in posting order
+        for (EventHandlerItem item : eventHandlerIndex.resolve(event.getTopic())) {
+            if (item.matchesFilter(event)) {
+                item.getQueue().post(event, asyncHandler, batchSize);
+            }
+        }
+    }
+
+    /**
+     * Waits until all events sent via {@link #postEvent(Event)} are delivered to the event handlers.
+     * @param timeout Maximum time to wait
+     * @param unit Time unit of the timeout
+     * @return true if all posted events are delivered, false if the timeout elapsed before
+     * @throws InterruptedException If the current thread was interrupted while waiting
+     */
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        return pendingEvents.await(timeout, unit);
+    }
+
+    /**
+     * @return Snapshot of the event delivery metrics
+     */
+    public @NotNull EventAdminMetrics getMetrics() {
+        List<EventAdminMetrics.HandlerMetrics> handlerMetrics = new ArrayList<>();
+        for (EventHandlerItem item : eventHandlerIndex.getItems()) {
+            handlerMetrics.add(new EventAdminMetrics.HandlerMetrics(
+                    item.getEventHandler(),
+                    item.getExceptions().sum(),
+                    item.getHandlingTime().snapshot()));
+        }
+        return new EventAdminMetrics(
+                postedEvents.sum(),
+                sentEvents.sum(),
+                pendingEvents.getDropped(),
+                pendingEvents.get(),
+                pendingEvents.getMax(),
+                handlerExceptions.sum(),
+                handlingTime.snapshot(),
+                handlerMetrics);
+    }
+
+    /**
+     * Resets the event delivery metrics, e.g. after a warm-up phase.
+     */
+    public void resetMetrics() {
+        postedEvents.reset();
+        sentEvents.reset();
+        handlerExceptions.reset();
+        handlingTime.reset();
+        pendingEvents.resetStatistics();
+        for (EventHandlerItem item : eventHandlerIndex.getItems()) {
+            item.getExceptions().reset();
+            item.getHandlingTime().reset();
         }
     }
 
     @Override
     public void sendEvent(final Event event) {
-        distributeEvent(event);
+        sentEvents.increment();
+        for (EventHandlerItem item : eventHandlerIndex.resolve(event.getTopic())) {
+            if (item.matchesFilter(event)) {
+                deliverEvent(item, event);
+            }
+        }
     }
 
-    private void distributeEvent(Event event) {
-        synchronized (eventHandlers) {
-            for (EventHandlerItem item : eventHandlers.values()) {
-                if (item.matches(event)) {
-                    try {
-                        if (log.isDebugEnabled()) {
-                            log.debug(
-                                    "Distribute event: {} to {}, bundleContext={}",
-                                    event.getTopic(),
-                                    item.getEventHandler().getClass(),
-                                    this.bundleContext);
-                        }
-                        item.getEventHandler().handleEvent(event);
-                    } catch (Throwable ex) {
-                        log.error(
-                                "Error handling event {} in {}",
-                                event,
-                                item.getEventHandler().getClass(),
-                                ex);
-                    }
+    private void deliverEvents(EventHandlerItem item, List<Event> events) {
+        if (batchSize > 0 && item.getEventHandler() instanceof BatchEventHandler) {
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug(
+                            "Distribute {} events to {}, bundleContext={}",
+                            events.size(),
+                            item.getEventHandler().getClass(),
+                            this.bundleContext);
+                }
+                long startTime = System.nanoTime();
+                try {
+                    ((BatchEventHandler) item.getEventHandler()).handleEvents(events);
+                } finally {
+                    recordHandlingTime(item, System.nanoTime() - startTime, events.size());
                 }
+            } catch (Throwable ex) {
+                recordHandlerException(item);
+                log.error("Error handling {} events in {}", events.size(), item.getEventHandler().getClass(), ex);
+            }
+        } else {
+            for (Event event : events) {
+                deliverEvent(item, event);
+            }
+        }
+    }
+
+    private void deliverEvent(EventHandlerItem item, Event event) {
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "Distribute event: {} to {}, bundleContext={}",
+                        event.getTopic(),
+                        item.getEventHandler().getClass(),
+                        this.bundleContext);
             }
+            long startTime = System.nanoTime();
+            try {
+                item.getEventHandler().handleEvent(event);
+            } finally {
+                recordHandlingTime(item, System.nanoTime() - startTime, 1);
+            }
+        } catch (Throwable ex) {
+            recordHandlerException(item);
+            log.error("Error handling event {} in {}", event, item.getEventHandler().getClass(), ex);
         }
     }
 
+    /**
+     * Records the handling time per event: the time of a batch call is split evenly over the events of the batch,
+     * so handlers receiving events one by one and in batches are comparable in the same histogram.
+     */
+    private void recordHandlingTime(EventHandlerItem item, long nanos, int eventCount) {
+        handlingTime.record(nanos, eventCount);
+        item.getHandlingTime().record(nanos, eventCount);
+    }
+
+    private void recordHandlerException(EventHandlerItem item) {
+        handlerExceptions.increment();
+        item.getExceptions().increment();
+    }
+
     protected void bindEventHandler(EventHandler eventHandler, Map<String, Object> props) {
+        EventHandlerItem item;
+        try {
+            item = new EventHandlerItem(eventHandler, props, this::deliverEvents, pendingEvents);
+        } catch (InvalidSyntaxException ex) {
+            // as defined in the spec the event handler is ignored if the event filter is invalid
+            log.warn(
+                    "Ignore event handler {} with invalid event filter: {}", eventHandler.getClass(), ex.getMessage());
+            return;
+        }
         synchronized (eventHandlers) {
-            eventHandlers.put(
-                    ServiceUtil.getComparableForServiceRanking(props, Order.DESCENDING),
-                    new EventHandlerItem(eventHandler, props));
+            EventHandlerItem previousItem = eventHandlers.put(
+                    ServiceUtil.getComparableForServiceRanking(props, Order.DESCENDING), item);
+            if (previousItem != null) {
+                previousItem.getQueue().close();
+            }
+            updateEventHandlerIndex();
         }
     }
 
     protected void unbindEventHandler(EventHandler eventHandler, Map<String, Object> props) {
         synchronized (eventHandlers) {
-            eventHandlers.remove(ServiceUtil.getComparableForServiceRanking(props, Order.DESCENDING));
+            EventHandlerItem item =
+                    eventHandlers.remove(ServiceUtil.getComparableForServiceRanking(props, Order.DESCENDING));
+            if (item != null) {
+                // discard posted events not yet delivered to the unbound handler
+                item.getQueue().close();
+            }
+            updateEventHandlerIndex();
         }
     }
 
+    private void updateEventHandlerIndex() {
+        eventHandlerIndex = new EventTopicIndex<>(List.copyOf(eventHandlers.values()), EventHandlerItem::getTopics);
+    }
+
     private static class EventHandlerItem {
 
         private final EventHandler eventHandler;
-        private final Pattern[] topicPatterns;
-
-        private static final Pattern WILDCARD_PATTERN = Pattern.compile("[^*]+|(\\*)");
+        private final String[] topics;
+        private final Filter filter;
+        private final OrderedEventQueue queue;
+        private final LatencyRecorder handlingTime = new LatencyRecorder();
+        private final LongAdder exceptions = new LongAdder();
 
-        public EventHandlerItem(EventHandler eventHandler, Map<String, Object> props) {
+        public EventHandlerItem(
+                EventHandler eventHandler,
+                Map<String, Object> props,
+                BiConsumer<EventHandlerItem, List<Event>> eventDelivery,
+                OrderedEventQueue.PendingEvents pendingEvents)
+                throws InvalidSyntaxException {
             this.eventHandler = eventHandler;
-            topicPatterns = generateTopicPatterns(props.get(EventConstants.EVENT_TOPIC));
+            topics = toTopics(props.get(EventConstants.EVENT_TOPIC));
+            filter = toFilter(props.get(EventConstants.EVENT_FILTER));
+            queue = new OrderedEventQueue(events -> eventDelivery.accept(this, events), pendingEvents);
         }
 
-        public boolean matches(Event event) {
-            if (topicPatterns.length == 0) {
-                return true;
-            }
-            String topic = event.getTopic();
-            if (topic != null) {
-                for (Pattern topicPattern : topicPatterns) {
-                    if (topicPattern.matcher(topic).matches()) {
-                        return true;
-                    }
-                }
-            }
-            return false;
+        /**
+         * The event topic is already matched via {@link EventTopicIndex}, only the event filter is checked here.
+         * @param event Event
+         * @return true if the event matches the event filter of the handler
+         */
+        public boolean matchesFilter(Event event) {
+            return filter == null || event.matches(filter);
         }
 
         public EventHandler getEventHandler() {
             return eventHandler;
         }
 
-        private static Pattern[] generateTopicPatterns(Object topic) {
-            String[] topics;
+        public String[] getTopics() {
+            return topics;
+        }
+
+        public OrderedEventQueue getQueue() {
+            return queue;
+        }
+
+        public LatencyRecorder getHandlingTime() {
+            return handlingTime;
+        }
+
+        public LongAdder getExceptions() {
+            return exceptions;
+        }
+
+        private static String[] toTopics(Object topic) {
             if (topic == null) {
-                topics = new String[0];
+                return new String[0];
             } else if (topic instanceof String) {
-                topics = new String[] {(String) topic};
+                return new String[] {(String) topic};
             } else if (topic instanceof String[]) {
-                topics = (String[]) topic;
+                return (String[]) topic;
             } else {
                 throw new IllegalArgumentException("Invalid topic: " + topic);
             }
-            Pattern[] patterns = new Pattern[topics.length];
-            for (int i = 0; i < topics.length; i++) {
-                patterns[i] = toWildcardPattern(topics[i]);
-            }
-            return patterns;
         }
 
-        /**
-         * Converts a wildcard string with * to a regex pattern (from http://stackoverflow.com/questions/24337657/wildcard-matching-in-java)
-         * @param wildcard
-         * @return Regexp pattern
-         */
-        private static Pattern toWildcardPattern(String wildcard) {
-            Matcher matcher = WILDCARD_PATTERN.matcher(wildcard);
-            StringBuffer result = new StringBuffer();
-            while (matcher.find()) {
-                if (matcher.group(1) != null) matcher.appendReplacement(result, ".*");
-                else matcher.appendReplacement(result, "\\\\Q" + matcher.group(0) + "\\\\E");
+        private static Filter toFilter(Object filter) throws InvalidSyntaxException {
+            if (filter == null) {
+                return null;
             }
-            matcher.appendTail(result);
-            return Pattern.compile(result.toString());
+            return FilterCache.getFilter(filter.toString());
         }
     }
 }
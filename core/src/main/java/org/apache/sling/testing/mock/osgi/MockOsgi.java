@@ -19,7 +19,10 @@
 package org.apache.sling.testing.mock.osgi;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Dictionary;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
@@ -30,6 +33,7 @@ import org.jetbrains.annotations.Nullable;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.component.ComponentContext;
@@ -44,6 +48,14 @@ import static org.apache.sling.testing.mock.osgi.MapUtil.toMap;
  */
 public final class MockOsgi {
 
+    /**
+     * System property to enable the parallel shutdown by default for all bundle contexts: Components are deactivated
+     * in reverse order of their references to each other, independent components in parallel. Can be set per bundle
+     * context with
+     * {@link #setShutdownParallel(BundleContext, boolean)}.
+     */
+    public static final String PROPERTY_SHUTDOWN_PARALLEL = "org.apache.sling.testing.mock.osgi.shutdown.parallel";
+
     private MockOsgi() {
         // static methods only
     }
@@ -301,7 +313,7 @@ public final class MockOsgi {
         return component;
     }
 
-    private static <T> void registerDSComponent(
+    private static <T> ServiceRegistration<?> registerDSComponent(
             @NotNull T component, @NotNull BundleContext bundleContext, Map<String, Object> mergedProperties) {
         OsgiMetadata metadata = Objects.requireNonNull(
                 OsgiMetadataUtil.getMetadata(component.getClass()), "No metadata found for " + component.getClass());
@@ -314,7 +326,7 @@ public final class MockOsgi {
 
         // we also register DS Components that aren't services in order for bind/unbind to work - they are registered
         // with no service interfaces
-        bundleContext.registerService(
+        return bundleContext.registerService(
                 metadata.getServiceInterfaces().toArray(new String[0]), component, serviceProperties);
     }
 
@@ -333,6 +345,54 @@ public final class MockOsgi {
         return registerInjectActivateService(dsComponentClass, bundleContext, MapUtil.toMap(properties));
     }
 
+    /**
+     * Injects dependencies, activates and registers a set of DS components in the mocked OSGi environment.
+     * A component is activated after all components of the set providing a service it has a reference to,
+     * independent components are activated in parallel. Components with STATIC+GREEDY references to the
+     * registered services are restarted only once, as with {@link #runBatch(BundleContext, Runnable)}.
+     * If a component fails to activate, the components of the set registered before are unregistered and
+     * deactivated again.
+     * @param bundleContext Bundle context from which services are fetched to inject and which is used for registering new services
+     * @param dsComponents DS component classes, which are instantiated, or DS component instances
+     * @return Registered component instances, in the order of the given components
+     */
+    public static @NotNull List<Object> registerInjectActivateServices(
+            @NotNull BundleContext bundleContext, @NotNull Collection<?> dsComponents) {
+        List<Object> components = new ArrayList<>(dsComponents);
+        List<Class<?>> componentClasses = new ArrayList<>(components.size());
+        for (Object component : components) {
+            componentClasses.add(component instanceof Class ? (Class<?>) component : component.getClass());
+        }
+        List<Object> result = new ArrayList<>(components.size());
+        runBatch(bundleContext, () -> {
+            List<ActivatedComponent> activatedComponents = ParallelComponentActivator.activate(
+                    componentClasses,
+                    index -> {
+                        Class<?> componentClass = componentClasses.get(index);
+                        Map<String, Object> mergedProperties =
+                                propertiesMergeWithOsgiMetadata(componentClass, getConfigAdmin(bundleContext), null);
+                        ComponentContext componentContext = newComponentContext(bundleContext, mergedProperties);
+                        Object component = components.get(index);
+                        if (component instanceof Class) {
+                            component = OsgiServiceUtil.activateInjectServices(
+                                    componentClass, (MockComponentContext) componentContext);
+                        } else {
+                            MockOsgi.injectServices(component, bundleContext, mergedProperties);
+                            OsgiServiceUtil.activateDeactivate(
+                                    component, (MockComponentContext) componentContext, true);
+                        }
+                        return new ActivatedComponent(component, mergedProperties);
+                    },
+                    item -> item.registration = registerDSComponent(item.component, bundleContext, item.properties),
+                    item -> {
+                        item.registration.unregister();
+                        deactivate(item.component, bundleContext, item.properties);
+                    });
+            activatedComponents.forEach(item -> result.add(item.component));
+        });
+        return result;
+    }
+
     /**
      * Simulates activation of a DS component instance. Invokes the @Activate annotated method.
      * @param target DS component instance
@@ -563,6 +623,42 @@ public final class MockOsgi {
         }
     }
 
+    /**
+     * Registers services as a batch. Services with STATIC+GREEDY references to services registered or unregistered
+     * in the batch are restarted only once after the batch, instead of once per affected registration.
+     * @param bundleContext Bundle context
+     * @param registrations Registers or unregisters services in the given bundle context
+     */
+    public static void runBatch(@NotNull BundleContext bundleContext, @NotNull Runnable registrations) {
+        ((MockBundleContext) bundleContext).runBatch(registrations);
+    }
+
+    /**
+     * Creates a child bundle context that inherits the services and configurations of the given bundle context.
+     * Changes to services and configurations in the child do not affect the given bundle context, components
+     * inherited from it that are affected by such changes are re-created in the child. The child is discarded
+     * with {@link #shutdown(BundleContext)}, which deactivates only the components created in the child.
+     * The given bundle context must not be modified while the child is in use. Service and bundle listeners
+     * registered in the given bundle context are notified about changes in the child.
+     * @param bundleContext Bundle context
+     * @return Child bundle context
+     */
+    public static @NotNull BundleContext fork(@NotNull BundleContext bundleContext) {
+        return ((MockBundleContext) bundleContext).fork();
+    }
+
+    /**
+     * Enables or disables the parallel shutdown of the given bundle context: Components are deactivated in reverse
+     * order of their references to each other, independent components in parallel. Defaults to the system property
+     * {@link #PROPERTY_SHUTDOWN_PARALLEL}.
+     * Child bundle contexts forked afterwards inherit the setting.
+     * @param bundleContext Bundle context
+     * @param parallel Whether to shut down in parallel
+     */
+    public static void setShutdownParallel(@NotNull BundleContext bundleContext, boolean parallel) {
+        ((MockBundleContext) bundleContext).setShutdownParallel(parallel);
+    }
+
     /**
      * Deactivates all bundles registered in the mocked bundle context.
      * @param bundleContext Bundle context
@@ -571,6 +667,17 @@ public final class MockOsgi {
         ((MockBundleContext) bundleContext).shutdown();
     }
 
+    private static final class ActivatedComponent {
+        private final Object component;
+        private final Map<String, Object> properties;
+        private ServiceRegistration<?> registration;
+
+        ActivatedComponent(Object component, Map<String, Object> properties) {
+            this.component = component;
+            this.properties = properties;
+        }
+    }
+
     /**
      * Gets configuration admin.
      * @param bundleContext Bundle context
@@ -18,12 +18,9 @@
  */
 package org.apache.sling.testing.mock.osgi;
 
-import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Map;
 
-import org.apache.sling.commons.osgi.Order;
-import org.apache.sling.commons.osgi.ServiceUtil;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
@@ -35,18 +32,10 @@ class MockServiceReference<T> implements ServiceReference<T> {
 
     private final Bundle bundle;
     private final MockServiceRegistration<T> serviceRegistration;
-    private volatile Comparable<Object> comparable;
 
     public MockServiceReference(final Bundle bundle, final MockServiceRegistration<T> serviceRegistration) {
         this.bundle = bundle;
         this.serviceRegistration = serviceRegistration;
-        this.comparable = buildComparable();
-    }
-
-    private Comparable<Object> buildComparable() {
-        Map<String, Object> props = serviceRegistration.getPropertiesAsMap();
-        // use ascending order as defined in ServiceReference#compareTo()
-        return ServiceUtil.getComparableForServiceRanking(props, Order.ASCENDING);
     }
 
     @Override
@@ -54,14 +43,20 @@ class MockServiceReference<T> implements ServiceReference<T> {
         return this.bundle;
     }
 
+    /**
+     * @return Service registration of this reference
+     */
+    MockServiceRegistration<T> getServiceRegistration() {
+        return this.serviceRegistration;
+    }
+
     /**
      * Set service reference property
      * @param key Key
      * @param value Value
      */
     public void setProperty(final String key, final Object value) {
-        this.serviceRegistration.getProperties().put(key, value);
-        this.comparable = buildComparable();
+        this.serviceRegistration.setProperty(key, value);
     }
 
     @Override
@@ -71,18 +66,18 @@ class MockServiceReference<T> implements ServiceReference<T> {
 
     @Override
     public Object getProperty(final String key) {
-        return this.serviceRegistration.getProperties().get(key);
+        return this.serviceRegistration.getPropertiesAsMap().get(key);
     }
 
     @Override
     public String[] getPropertyKeys() {
-        Dictionary<String, Object> props = this.serviceRegistration.getProperties();
-        return Collections.list(props.keys()).toArray(new String[props.size()]);
+        Map<String, Object> props = this.serviceRegistration.getPropertiesAsMap();
+        return props.keySet().toArray(new String[props.size()]);
     }
 
     @Override
     public int hashCode() {
-        return comparable.hashCode();
+        return getComparable().hashCode();
     }
 
     @Override
@@ -90,7 +85,7 @@ class MockServiceReference<T> implements ServiceReference<T> {
         if (!(obj instanceof MockServiceReference)) {
             return false;
         }
-        return comparable.equals(((MockServiceReference) obj).comparable);
+        return getComparable().equals(((MockServiceReference) obj).getComparable());
     }
 
     @Override
@@ -98,7 +93,11 @@ class MockServiceReference<T> implements ServiceReference<T> {
         if (!(obj instanceof MockServiceReference)) {
             return 0;
         }
-        return comparable.compareTo(((MockServiceReference) obj).comparable);
+        return getComparable().compareTo(((MockServiceReference) obj).getComparable());
+    }
+
+    private Comparable<Object> getComparable() {
+        return this.serviceRegistration.getRankingComparable();
     }
 
     long getServiceId() {
@@ -119,6 +118,13 @@ class MockServiceReference<T> implements ServiceReference<T> {
         }
     }
 
+    /**
+     * @return Immutable snapshot of the current service properties
+     */
+    Map<String, Object> getPropertiesAsMap() {
+        return this.serviceRegistration.getPropertiesAsMap();
+    }
+
     T getService() {
         return this.serviceRegistration.getService();
     }
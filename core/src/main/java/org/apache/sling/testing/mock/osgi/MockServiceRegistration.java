@@ -19,21 +19,24 @@
 package org.apache.sling.testing.mock.osgi;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.felix.framework.FilterImpl;
+import org.apache.sling.commons.osgi.Order;
+import org.apache.sling.commons.osgi.ServiceUtil;
 import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.OsgiMetadata;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
-import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
@@ -48,7 +51,7 @@ class MockServiceRegistration<T> implements ServiceRegistration<T>, Comparable<M
     private final Long serviceId;
     private final Set<String> clazzes;
     private final T service;
-    private final Hashtable<String, Object> properties;
+    private volatile PropertiesSnapshot properties;
     private final ServiceReference<T> serviceReference;
     private final MockBundleContext bundleContext;
 
@@ -70,23 +73,66 @@ class MockServiceRegistration<T> implements ServiceRegistration<T>, Comparable<M
 
         readOsgiMetadata();
 
-        this.properties = new Hashtable<>();
-        this.updateProperties(properties);
+        this.properties = buildProperties(properties);
         this.serviceReference = new MockServiceReference<T>(bundle, this);
         this.bundleContext = bundleContext;
     }
 
-    private void updateProperties(final Dictionary<String, ?> newProps) {
-        this.properties.clear();
+    private MockServiceRegistration(
+            final MockServiceRegistration<T> registration, final Bundle bundle, MockBundleContext bundleContext) {
+        this.serviceId = registration.serviceId;
+        this.clazzes = registration.clazzes;
+        this.service = registration.service;
+        this.properties = registration.properties;
+        this.serviceReference = new MockServiceReference<T>(bundle, this);
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Creates a copy of this registration for a forked bundle context, with the same service ID, service instance
+     * and properties. Unregistering or updating the copy does not affect this registration.
+     * @param bundle Bundle of the forked bundle context
+     * @param bundleContext Forked bundle context
+     * @return Service registration
+     */
+    MockServiceRegistration<T> copyFor(final Bundle bundle, MockBundleContext bundleContext) {
+        return new MockServiceRegistration<>(this, bundle, bundleContext);
+    }
+
+    private PropertiesSnapshot buildProperties(final Dictionary<String, ?> newProps) {
+        Map<String, Object> map = new HashMap<>();
         if (newProps != null) {
             final Enumeration<String> names = newProps.keys();
             while (names.hasMoreElements()) {
                 final String key = names.nextElement();
-                this.properties.put(key, newProps.get(key));
+                map.put(key, newProps.get(key));
             }
         }
-        this.properties.put(Constants.SERVICE_ID, this.serviceId);
-        this.properties.put(Constants.OBJECTCLASS, this.clazzes.toArray(new String[this.clazzes.size()]));
+        map.put(Constants.SERVICE_ID, this.serviceId);
+        map.put(Constants.OBJECTCLASS, this.clazzes.toArray(new String[this.clazzes.size()]));
+        return new PropertiesSnapshot(map);
+    }
+
+    private synchronized void swapProperties(final PropertiesSnapshot newProperties) {
+        Object ranking = this.properties.map.get(Constants.SERVICE_RANKING);
+        Object newRanking = newProperties.map.get(Constants.SERVICE_RANKING);
+        if (Objects.equals(ranking, newRanking)) {
+            this.properties = newProperties;
+        } else {
+            // the position in the ranking-ordered service lookup index changes
+            this.bundleContext.updateServiceRanking(this, () -> this.properties = newProperties);
+        }
+    }
+
+    /**
+     * Set a single service property without notifying service listeners.
+     * @param key Key
+     * @param value Value
+     */
+    synchronized void setProperty(final String key, final Object value) {
+        Map<String, Object> map = new HashMap<>(this.properties.map);
+        map.put(key, Objects.requireNonNull(value, "value"));
+        swapProperties(new PropertiesSnapshot(map));
     }
 
     @Override
@@ -96,8 +142,8 @@ class MockServiceRegistration<T> implements ServiceRegistration<T>, Comparable<M
 
     @Override
     public void setProperties(final Dictionary<String, ?> newProps) {
-        this.updateProperties(newProps);
-        this.bundleContext.notifyServiceListeners(ServiceEvent.MODIFIED, this.serviceReference);
+        this.swapProperties(buildProperties(newProps));
+        this.bundleContext.notifyServiceModified(this);
     }
 
     @Override
@@ -105,17 +151,30 @@ class MockServiceRegistration<T> implements ServiceRegistration<T>, Comparable<M
         bundleContext.unregisterService(this);
     }
 
+    /**
+     * @return Modifiable copy of the current service properties, changes are not applied to the service
+     */
     Dictionary<String, Object> getProperties() {
-        return this.properties;
+        return new Hashtable<>(this.properties.map);
     }
 
+    /**
+     * @return Read-only snapshot of the current service properties
+     */
     Map<String, Object> getPropertiesAsMap() {
-        return MapUtil.toMap(this.properties);
+        return this.properties.map;
+    }
+
+    /**
+     * @return Comparable for service ranking of the current service properties (ascending order)
+     */
+    Comparable<Object> getRankingComparable() {
+        return this.properties.rankingComparable;
     }
 
     boolean matches(final String clazz, final String filter) throws InvalidSyntaxException {
         return (clazz == null || this.clazzes.contains(clazz))
-                && (filter == null || new FilterImpl(filter).match(properties));
+                && (filter == null || FilterCache.getFilter(filter).match(properties.dictionary));
     }
 
     Set<String> getClasses() {
@@ -167,4 +226,74 @@ class MockServiceRegistration<T> implements ServiceRegistration<T>, Comparable<M
     public String toString() {
         return "#" + serviceId + " [" + StringUtils.join(clazzes, ",") + "]: " + service.toString();
     }
+
+    /**
+     * Immutable snapshot of the service properties. A new snapshot is created and swapped in atomically on each
+     * update, so the properties can be read without locking and without copying them.
+     */
+    private static final class PropertiesSnapshot {
+
+        private final Map<String, Object> map;
+        private final Dictionary<String, Object> dictionary;
+        private final Comparable<Object> rankingComparable;
+
+        PropertiesSnapshot(Map<String, Object> map) {
+            this.map = Collections.unmodifiableMap(map);
+            this.dictionary = new ReadOnlyDictionary(this.map);
+            // use ascending order as defined in ServiceReference#compareTo()
+            this.rankingComparable = ServiceUtil.getComparableForServiceRanking(this.map, Order.ASCENDING);
+        }
+    }
+
+    /**
+     * Read-only dictionary backed by a map.
+     */
+    private static final class ReadOnlyDictionary extends Dictionary<String, Object> {
+
+        private final Map<String, Object> map;
+
+        ReadOnlyDictionary(Map<String, Object> map) {
+            this.map = map;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public Enumeration<String> keys() {
+            return Collections.enumeration(map.keySet());
+        }
+
+        @Override
+        public Enumeration<Object> elements() {
+            return Collections.enumeration(map.values());
+        }
+
+        @Override
+        public Object get(Object key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            throw new UnsupportedOperationException("Service properties are read-only.");
+        }
+
+        @Override
+        public Object remove(Object key) {
+            throw new UnsupportedOperationException("Service properties are read-only.");
+        }
+
+        @Override
+        public String toString() {
+            return map.toString();
+        }
+    }
 }
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.osgi.service.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue of asynchronously posted events for a single event handler.
+ * The events are delivered in the order they were posted, but events for different handlers
+ * are delivered concurrently by the threads of the given executor.
+ * At most one delivery task per queue is scheduled at a time. Events posted while a delivery task is pending
+ * are coalesced and delivered by this task, in batches of up to the given maximum batch size.
+ */
+final class OrderedEventQueue {
+
+    /**
+     * Maximum number of events delivered in one task before the task is rescheduled,
+     * to give handlers of other queues a chance when the executor has fewer threads than there are handlers.
+     */
+    static final int MAX_EVENTS_PER_TASK = 256;
+
+    private static final Logger log = LoggerFactory.getLogger(OrderedEventQueue.class);
+
+    private final Consumer<List<Event>> handler;
+    private final PendingEvents pendingEvents;
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * @param handler Delivers a batch of events to the event handler
+     * @param pendingEvents Counter for events which are posted but not delivered yet
+     */
+    OrderedEventQueue(Consumer<List<Event>> handler, PendingEvents pendingEvents) {
+        this.handler = handler;
+        this.pendingEvents = pendingEvents;
+    }
+
+    /**
+     * Adds the event to the queue and schedules delivery if no delivery task is pending.
+     * @param event Event
+     * @param executor Executor for the delivery task
+     * @param maxBatchSize Maximum number of events delivered to the handler at once
+     */
+    void post(Event event, Executor executor, int maxBatchSize) {
+        if (closed) {
+            return;
+        }
+        pendingEvents.add(1);
+        events.add(event);
+        if (closed) {
+            // closed concurrently, the event may have been added after the queue was cleared
+            discardEvents();
+            return;
+        }
+        schedule(executor, maxBatchSize);
+    }
+
+    /**
+     * Discards all pending events, e.g. when the executor is shut down. Events posted afterwards
+     * are delivered again with the executor given on posting.
+     */
+    void clear() {
+        discardEvents();
+        scheduled.set(false);
+    }
+
+    /**
+     * Discards all pending events, events posted afterwards are ignored.
+     */
+    void close() {
+        closed = true;
+        discardEvents();
+    }
+
+    private void discardEvents() {
+        int count = 0;
+        while (events.poll() != null) {
+            count++;
+        }
+        pendingEvents.drop(count);
+    }
+
+    private void schedule(Executor executor, int maxBatchSize) {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> deliver(executor, maxBatchSize));
+            } catch (RejectedExecutionException ex) {
+                // executor is shut down
+                log.debug("Ignore rejected execution: " + ex.getMessage(), ex);
+                scheduled.set(false);
+                discardEvents();
+            }
+        }
+    }
+
+    private void deliver(Executor executor, int maxBatchSize) {
+        int count = 0;
+        while (!closed && count < MAX_EVENTS_PER_TASK) {
+            List<Event> batch = pollBatch(maxBatchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            try {
+                handler.accept(batch);
+            } finally {
+                pendingEvents.remove(batch.size());
+            }
+            count += batch.size();
+        }
+        scheduled.set(false);
+        // check again for events that were added after the last poll, but before the flag was reset
+        if (!closed && !events.isEmpty()) {
+            schedule(executor, maxBatchSize);
+        }
+    }
+
+    private List<Event> pollBatch(int maxBatchSize) {
+        Event event = events.poll();
+        if (event == null) {
+            return List.of();
+        }
+        if (maxBatchSize <= 1) {
+            return List.of(event);
+        }
+        List<Event> batch = new ArrayList<>();
+        batch.add(event);
+        while (batch.size() < maxBatchSize && (event = events.poll()) != null) {
+            batch.add(event);
+        }
+        return batch;
+    }
+
+    /**
+     * Counts events which are posted but not delivered yet, shared between the queues of all event handlers.
+     */
+    static final class PendingEvents {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong maxCount = new AtomicLong();
+        private final LongAdder droppedCount = new LongAdder();
+
+        void add(int delta) {
+            long value = count.addAndGet(delta);
+            if (value > maxCount.get()) {
+                maxCount.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        void remove(int delta) {
+            if (delta > 0 && count.addAndGet(-delta) == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Removes events which are discarded instead of delivered.
+         * @param delta Number of events
+         */
+        void drop(int delta) {
+            droppedCount.add(delta);
+            remove(delta);
+        }
+
+        long get() {
+            return count.get();
+        }
+
+        long getMax() {
+            return maxCount.get();
+        }
+
+        long getDropped() {
+            return droppedCount.sum();
+        }
+
+        /**
+         * Resets the statistics, the number of pending events is kept.
+         */
+        void resetStatistics() {
+            maxCount.set(count.get());
+            droppedCount.reset();
+        }
+
+        /**
+         * Waits until there are no pending events.
+         * @param timeout Maximum time to wait
+         * @param unit Time unit of the timeout
+         * @return true if there are no pending events, false if the timeout elapsed before
+         * @throws InterruptedException If the current thread was interrupted while waiting
+         */
+        synchronized boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (count.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+}
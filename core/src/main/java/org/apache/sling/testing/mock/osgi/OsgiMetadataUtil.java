@@ -18,25 +18,13 @@
  */
 package org.apache.sling.testing.mock.osgi;
 
-import javax.xml.XMLConstants;
-import javax.xml.namespace.NamespaceContext;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -44,11 +32,10 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import org.apache.commons.collections4.BidiMap;
-import org.apache.commons.collections4.bidimap.TreeBidiMap;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.felix.framework.FilterImpl;
 import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
@@ -57,10 +44,6 @@ import org.reflections.Reflections;
 import org.reflections.scanners.Scanners;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * Helper methods to parse OSGi metadata.
@@ -69,39 +52,44 @@ final class OsgiMetadataUtil {
 
     private static final Logger log = LoggerFactory.getLogger(OsgiMetadataUtil.class);
 
-    private static final String METADATA_PATH = "OSGI-INF";
+    static final String METADATA_PATH = "OSGI-INF";
     private static final String METADATA_METATYPE_PATH = "OSGI-INF/metatype/";
-
-    private static final BidiMap<String, String> NAMESPACES = new TreeBidiMap<>();
-
-    static {
-        NAMESPACES.put("scr", "http://www.osgi.org/xmlns/scr/v1.1.0");
-    }
+    static final String SERVICE_COMPONENT_HEADER = "Service-Component";
 
     private static final OsgiMetadata NULL_METADATA = new OsgiMetadata();
 
-    private static final NamespaceContext NAMESPACE_CONTEXT = new NamespaceContext() {
-        @Override
-        public String getNamespaceURI(String prefix) {
-            return NAMESPACES.get(prefix);
-        }
+    /**
+     * System property to enable lazy resolution of the SCR metadata: Instead of parsing all SCR metadata XML
+     * documents from the classpath on first access, only the documents for the requested classes are parsed.
+     * See {@link LazyComponentDescriptorResolver} for details.
+     */
+    static final String PROPERTY_METADATA_LAZY = "org.apache.sling.testing.mock.osgi.metadata.lazy";
 
-        @Override
-        public String getPrefix(String namespaceURI) {
-            return NAMESPACES.getKey(namespaceURI);
-        }
+    private static final boolean METADATA_LAZY = Boolean.getBoolean(PROPERTY_METADATA_LAZY);
 
-        @Override
-        public Iterator<String> getPrefixes(String namespaceURI) {
-            return NAMESPACES.keySet().iterator();
-        }
-    };
+    /**
+     * System property to let the lazy resolution of the SCR metadata scan the whole classpath for documents
+     * that are neither named after their implementation class nor declared in a <code>Service-Component</code>
+     * header. Disabled by default, as the scan costs as much as the eager mode.
+     */
+    static final String PROPERTY_METADATA_LAZY_SCAN = "org.apache.sling.testing.mock.osgi.metadata.lazy.scan";
 
-    /*
-     * The OSGI metadata XML files do not change during the unit test runs because static part of classpath.
-     * So we can cache the parsing step if we need them multiple times.
+    /**
+     * System property to define a file (e.g. below target/) to store the parsed SCR metadata in, to be
+     * reused by other JVMs with the same classpath (e.g. forked test JVMs).
+     * See {@link ComponentDescriptorCacheFile} for details. Not used in lazy mode.
      */
-    private static final Map<String, Document> METADATA_DOCUMENT_CACHE = initMetadataDocumentCache();
+    static final String PROPERTY_METADATA_CACHE_FILE = "org.apache.sling.testing.mock.osgi.metadata.cacheFile";
+
+    /**
+     * System property to read the MANIFEST.MF files and parse the SCR metadata XML documents in parallel
+     * on the common ForkJoin pool. The results are merged in classpath order, so they are the same as
+     * in sequential mode, also if multiple classpath entries define the same implementation class.
+     */
+    static final String PROPERTY_METADATA_PARALLEL = "org.apache.sling.testing.mock.osgi.metadata.parallel";
+
+    private static final boolean METADATA_PARALLEL = Boolean.getBoolean(PROPERTY_METADATA_PARALLEL);
+
     private static final ConcurrentMap<Class, OsgiMetadata> METADATA_CACHE = new ConcurrentHashMap<>();
 
     private OsgiMetadataUtil() {
@@ -116,9 +104,9 @@ final class OsgiMetadataUtil {
      */
     public static OsgiMetadata getMetadata(Class clazz) {
         OsgiMetadata metadata = METADATA_CACHE.computeIfAbsent(clazz, key -> {
-            Document metadataDocument = METADATA_DOCUMENT_CACHE.get(cleanupClassName(key.getName()));
-            if (metadataDocument != null) {
-                return new OsgiMetadata(key, metadataDocument);
+            ComponentDescriptor descriptor = getComponentDescriptor(cleanupClassName(key.getName()));
+            if (descriptor != null) {
+                return new OsgiMetadata(key, descriptor);
             }
             return NULL_METADATA;
         });
@@ -129,115 +117,130 @@ final class OsgiMetadataUtil {
         }
     }
 
+    private static ComponentDescriptor getComponentDescriptor(String className) {
+        if (METADATA_LAZY) {
+            return LazyMetadataDescriptorCache.RESOLVER.get(className);
+        } else {
+            return MetadataDescriptorCache.DESCRIPTORS.get(className);
+        }
+    }
+
     /**
-     * Reads all SCR metadata XML documents located at OSGI-INF/ and caches them with quick access by implementation class.
+     * @return Resolver for component descriptors if lazy metadata parsing is enabled, otherwise null
+     */
+    static LazyComponentDescriptorResolver getLazyComponentDescriptorResolver() {
+        return METADATA_LAZY ? LazyMetadataDescriptorCache.RESOLVER : null;
+    }
+
+    /**
+     * Reads all SCR metadata XML documents located at OSGI-INF/ and caches the component descriptors
+     * with quick access by implementation class.
      * @return Cache map
      */
-    private static Map<String, Document> initMetadataDocumentCache() {
-        Map<String, Document> cacheMap = new HashMap<>();
+    private static Map<String, ComponentDescriptor> initMetadataDescriptorCache() {
+        String cacheFilePath = System.getProperty(PROPERTY_METADATA_CACHE_FILE);
+        if (StringUtils.isBlank(cacheFilePath)) {
+            return scanMetadataDescriptors(METADATA_PARALLEL);
+        }
+        String key = ComponentDescriptorCacheFile.buildClasspathKey(METADATA_PATH);
+        if (key == null) {
+            return scanMetadataDescriptors(METADATA_PARALLEL);
+        }
 
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        xpath.setNamespaceContext(NAMESPACE_CONTEXT);
-        XPathExpression xpathExpression;
-        try {
-            xpathExpression = xpath.compile("//*[implementation/@class]");
-        } catch (XPathExpressionException ex) {
-            throw new RuntimeException("Compiling XPath expression failed.", ex);
+        // reuse descriptors from cache file if classpath is unchanged, otherwise rescan and rewrite the file
+        ComponentDescriptorCacheFile cacheFile = new ComponentDescriptorCacheFile(Paths.get(cacheFilePath));
+        Map<String, ComponentDescriptor> cacheMap = cacheFile.read(key);
+        if (cacheMap == null) {
+            cacheMap = scanMetadataDescriptors(METADATA_PARALLEL);
+            cacheFile.write(key, cacheMap);
+        }
+        return cacheMap;
+    }
+
+    /**
+     * Parses all SCR metadata XML documents in the classpath.
+     * @param parallel Parse the documents in parallel
+     * @return Component descriptors by implementation class
+     */
+    static Map<String, ComponentDescriptor> scanMetadataDescriptors(boolean parallel) {
+        List<String> paths = new ArrayList<>(getMetadataResourcePaths());
+        Stream<String> pathStream = parallel ? paths.parallelStream() : paths.stream();
+        List<List<ComponentDescriptor>> descriptorsByPath =
+                pathStream.map(OsgiMetadataUtil::parseMetadataDocuments).collect(Collectors.toList());
+
+        // merge in path order, so the same descriptor wins for duplicate implementation classes in both modes
+        Map<String, ComponentDescriptor> cacheMap = new HashMap<>();
+        for (List<ComponentDescriptor> descriptors : descriptorsByPath) {
+            for (ComponentDescriptor descriptor : descriptors) {
+                cacheMap.put(descriptor.getImplementationClass(), descriptor);
+            }
         }
+        return cacheMap;
+    }
 
+    /**
+     * Get the paths of all SCR metadata XML documents in the classpath, without parsing them.
+     * @return Resource paths (OSGi metatype files are excluded)
+     */
+    static Set<String> getMetadataResourcePaths() {
         // get all OSGI-INF/*.xml files from classpath
         Reflections reflections = new Reflections(METADATA_PATH, Scanners.Resources);
         Pattern xmlFilesPattern = Pattern.compile("^.*\\.xml$");
         Set<String> paths = reflections.getResources(xmlFilesPattern);
 
-        // filter out OSGi metatype files and parse all found XML documents
+        // filter out OSGi metatype files
         Pattern metatypeFilesPattern = Pattern.compile("^" + Pattern.quote(METADATA_METATYPE_PATH) + ".*$");
-        paths.stream()
+        return paths.stream()
                 .filter(path -> !metatypeFilesPattern.matcher(path).matches())
-                .forEach(path -> parseMetadataDocuments(cacheMap, path, xpathExpression));
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
 
-        return cacheMap;
+    /**
+     * Parses the SCR metadata XML documents with the given path from all classpath entries.
+     * @param cacheMap Map to put the component descriptors in
+     * @param resourcePath Resource path
+     */
+    static void parseMetadataDocuments(Map<String, ComponentDescriptor> cacheMap, String resourcePath) {
+        for (ComponentDescriptor descriptor : parseMetadataDocuments(resourcePath)) {
+            cacheMap.put(descriptor.getImplementationClass(), descriptor);
+        }
     }
 
-    private static void parseMetadataDocuments(
-            Map<String, Document> cacheMap, String resourcePath, XPathExpression xpathExpression) {
+    /**
+     * Parses the SCR metadata XML documents with the given path from all classpath entries.
+     * @param resourcePath Resource path
+     * @return Component descriptors in classpath and document order
+     */
+    private static List<ComponentDescriptor> parseMetadataDocuments(String resourcePath) {
+        List<ComponentDescriptor> descriptors = new ArrayList<>();
         try {
             Enumeration<URL> resourceUrls =
                     OsgiMetadataUtil.class.getClassLoader().getResources(resourcePath);
             while (resourceUrls.hasMoreElements()) {
                 URL resourceUrl = resourceUrls.nextElement();
                 try (InputStream fileStream = resourceUrl.openStream()) {
-                    parseMetadataDocument(cacheMap, resourcePath, fileStream, xpathExpression);
+                    descriptors.addAll(ComponentDescriptorParser.parse(fileStream, resourcePath));
                 }
             }
         } catch (Exception ex) {
             log.warn("Error reading SCR metadata XML document from " + resourcePath, ex);
         }
+        return descriptors;
     }
 
-    private static void parseMetadataDocument(
-            Map<String, Document> cacheMap,
-            String resourcePath,
-            InputStream fileStream,
-            XPathExpression xpathExpression)
-            throws XPathExpressionException {
-        Document metadata = toXmlDocument(fileStream, resourcePath);
-        NodeList nodes = (NodeList) xpathExpression.evaluate(metadata, XPathConstants.NODESET);
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node node = nodes.item(i);
-                String implementationClass = getImplementationClassName(node);
-                if (implementationClass != null) {
-                    cacheMap.put(implementationClass, metadata);
-                }
-            }
-        }
-    }
-
-    private static String getImplementationClassName(Node componentNode) {
-        NodeList childNodes = componentNode.getChildNodes();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
-            if (childNode.getNodeName().equals("implementation")) {
-                String implementationClass = getAttributeValue(childNode, "class");
-                if (!StringUtils.isBlank(implementationClass)) {
-                    return implementationClass;
-                }
-                break;
-            }
-        }
-        return null;
-    }
-
-    private static Document toXmlDocument(InputStream inputStream, String path) {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            factory.setExpandEntityReferences(false);
-            DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-            return documentBuilder.parse(inputStream);
-        } catch (ParserConfigurationException ex) {
-            throw new RuntimeException("Unable to read classpath resource: " + path, ex);
-        } catch (SAXException ex) {
-            throw new RuntimeException("Unable to read classpath resource: " + path, ex);
-        } catch (IOException ex) {
-            throw new RuntimeException("Unable to read classpath resource: " + path, ex);
-        } finally {
-            try {
-                inputStream.close();
-            } catch (IOException ex) {
-                // ignore
-            }
-        }
+    /*
+     * The OSGI metadata XML files do not change during the unit test runs because static part of classpath.
+     * So we can cache the parsing step if we need them multiple times.
+     * The holder classes ensure only the cache for the active mode is initialized.
+     */
+    private static final class MetadataDescriptorCache {
+        static final Map<String, ComponentDescriptor> DESCRIPTORS = initMetadataDescriptorCache();
     }
 
-    /**
-     * @param clazz OSGi component
-     * @return XPath query fragment to find matching XML node in SCR metadata
-     */
-    private static String getComponentXPathQuery(Class clazz) {
-        String className = cleanupClassName(clazz.getName());
-        return "//*[implementation/@class='" + className + "' or @name='" + className + "']";
+    private static final class LazyMetadataDescriptorCache {
+        static final LazyComponentDescriptorResolver RESOLVER = new LazyComponentDescriptorResolver(
+                ManifestScanner.getValues(SERVICE_COMPONENT_HEADER, METADATA_PARALLEL),
+                Boolean.getBoolean(PROPERTY_METADATA_LAZY_SCAN));
     }
 
     /**
@@ -249,132 +252,6 @@ final class OsgiMetadataUtil {
         return StringUtils.substringBefore(StringUtils.substringBefore(className, "$MockitoMock$"), "$$Enhancer");
     }
 
-    private static String getComponentName(Class clazz, Document metadata) {
-        String query = getComponentXPathQuery(clazz);
-        NodeList nodes = queryNodes(metadata, query);
-        if (nodes != null && nodes.getLength() > 0) {
-            return getAttributeValue(nodes.item(0), "name");
-        }
-        return clazz.getName();
-    }
-
-    private static String[] getConfigurationPID(Class clazz, Document metadata) {
-        String value = null;
-        String query = getComponentXPathQuery(clazz);
-        NodeList nodes = queryNodes(metadata, query);
-        if (nodes != null && nodes.getLength() > 0) {
-            value = getAttributeValue(nodes.item(0), "configuration-pid");
-        }
-        if (value == null) {
-            value = getComponentName(clazz, metadata);
-        }
-        return StringUtils.split(value);
-    }
-
-    private static Set<String> getServiceInterfaces(Class clazz, Document metadata) {
-        Set<String> serviceInterfaces = new HashSet<String>();
-        String query = getComponentXPathQuery(clazz) + "/service/provide[@interface!='']";
-        NodeList nodes = queryNodes(metadata, query);
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node node = nodes.item(i);
-                String serviceInterface = getAttributeValue(node, "interface");
-                if (StringUtils.isNotBlank(serviceInterface)) {
-                    serviceInterfaces.add(serviceInterface);
-                }
-            }
-        }
-        return serviceInterfaces;
-    }
-
-    private static Map<String, Object> getProperties(Class clazz, Document metadata) {
-        Map<String, Object> props = new HashMap<String, Object>();
-        String query = getComponentXPathQuery(clazz) + "/property[@name!='' and boolean(@value)]";
-        NodeList nodes = queryNodes(metadata, query);
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node node = nodes.item(i);
-                String name = getAttributeValue(node, "name");
-                String value = getAttributeValue(node, "value");
-                String type = getAttributeValue(node, "type");
-                if (StringUtils.equals("Integer", type)) {
-                    props.put(name, Integer.parseInt(value));
-                } else if (StringUtils.equals("Long", type)) {
-                    props.put(name, Long.parseLong(value));
-                } else if (StringUtils.equals("Boolean", type)) {
-                    props.put(name, Boolean.parseBoolean(value));
-                } else {
-                    props.put(name, value);
-                }
-            }
-        }
-        query = getComponentXPathQuery(clazz) + "/property[@name!='' and text()!='']";
-        nodes = queryNodes(metadata, query);
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node node = nodes.item(i);
-                String name = getAttributeValue(node, "name");
-                String[] value = StringUtils.split(StringUtils.trim(node.getTextContent()), "\n\r");
-                for (int j = 0; j < value.length; j++) {
-                    value[j] = StringUtils.trim(value[j]);
-                }
-                props.put(name, value);
-            }
-        }
-        return props;
-    }
-
-    private static List<Reference> getReferences(Class clazz, Document metadata) {
-        List<Reference> references = new ArrayList<Reference>();
-        String query = getComponentXPathQuery(clazz) + "/reference[@name!='']";
-        NodeList nodes = queryNodes(metadata, query);
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node node = nodes.item(i);
-                references.add(new Reference(clazz, node));
-            }
-        }
-        return references;
-    }
-
-    private static String getLifecycleMethodName(Class clazz, Document metadata, String methodName) {
-        String query = getComponentXPathQuery(clazz);
-        Node node = queryNode(metadata, query);
-        if (node != null) {
-            return getAttributeValue(node, methodName);
-        }
-        return null;
-    }
-
-    private static NodeList queryNodes(Document metadata, String xpathQuery) {
-        try {
-            XPath xpath = XPathFactory.newInstance().newXPath();
-            xpath.setNamespaceContext(NAMESPACE_CONTEXT);
-            return (NodeList) xpath.evaluate(xpathQuery, metadata, XPathConstants.NODESET);
-        } catch (XPathExpressionException ex) {
-            throw new RuntimeException("Error evaluating XPath: " + xpathQuery, ex);
-        }
-    }
-
-    private static Node queryNode(Document metadata, String xpathQuery) {
-        try {
-            XPath xpath = XPathFactory.newInstance().newXPath();
-            xpath.setNamespaceContext(NAMESPACE_CONTEXT);
-            return (Node) xpath.evaluate(xpathQuery, metadata, XPathConstants.NODE);
-        } catch (XPathExpressionException ex) {
-            throw new RuntimeException("Error evaluating XPath: " + xpathQuery, ex);
-        }
-    }
-
-    private static String getAttributeValue(Node node, String attributeName) {
-        Node namedItem = node.getAttributes().getNamedItem(attributeName);
-        if (namedItem != null) {
-            return namedItem.getNodeValue();
-        } else {
-            return null;
-        }
-    }
-
     static class OsgiMetadata {
 
         private final Class<?> clazz;
@@ -387,16 +264,22 @@ final class OsgiMetadataUtil {
         private final String deactivateMethodName;
         private final String modifiedMethodName;
 
-        private OsgiMetadata(Class<?> clazz, Document metadataDocument) {
+        private OsgiMetadata(Class<?> clazz, ComponentDescriptor descriptor) {
             this.clazz = clazz;
-            this.name = OsgiMetadataUtil.getComponentName(clazz, metadataDocument);
-            this.configurationPID = OsgiMetadataUtil.getConfigurationPID(clazz, metadataDocument);
-            this.serviceInterfaces = OsgiMetadataUtil.getServiceInterfaces(clazz, metadataDocument);
-            this.properties = OsgiMetadataUtil.getProperties(clazz, metadataDocument);
-            this.references = OsgiMetadataUtil.getReferences(clazz, metadataDocument);
-            this.activateMethodName = OsgiMetadataUtil.getLifecycleMethodName(clazz, metadataDocument, "activate");
-            this.deactivateMethodName = OsgiMetadataUtil.getLifecycleMethodName(clazz, metadataDocument, "deactivate");
-            this.modifiedMethodName = OsgiMetadataUtil.getLifecycleMethodName(clazz, metadataDocument, "modified");
+            this.name = descriptor.getName();
+            this.configurationPID = StringUtils.split(
+                    descriptor.getConfigurationPid() != null ? descriptor.getConfigurationPid() : descriptor.getName());
+            // descriptors are immutable and shared, expose modifiable copies as before
+            this.serviceInterfaces = new LinkedHashSet<>(descriptor.getServiceInterfaces());
+            this.properties = new HashMap<>(descriptor.getProperties());
+            List<Reference> referenceList = new ArrayList<>();
+            for (Map<String, String> referenceAttributes : descriptor.getReferences()) {
+                referenceList.add(new Reference(clazz, referenceAttributes));
+            }
+            this.references = referenceList;
+            this.activateMethodName = descriptor.getActivateMethodName();
+            this.deactivateMethodName = descriptor.getDeactivateMethodName();
+            this.modifiedMethodName = descriptor.getModifiedMethodName();
         }
 
         private OsgiMetadata() {
@@ -472,21 +355,21 @@ final class OsgiMetadataUtil {
         protected Filter targetFilter;
         protected Integer parameter;
 
-        protected Reference(Class<?> clazz, Node node) {
+        protected Reference(Class<?> clazz, Map<String, String> attributes) {
             this.clazz = clazz;
-            this.name = getAttributeValue(node, "name");
-            this.interfaceType = getAttributeValue(node, "interface");
-            this.cardinality = toCardinality(getAttributeValue(node, "cardinality"));
-            this.policy = toPolicy(getAttributeValue(node, "policy"));
-            this.policyOption = toPolicyOption(getAttributeValue(node, "policy-option"));
-            this.bind = getAttributeValue(node, "bind");
-            this.unbind = getAttributeValue(node, "unbind");
-            this.field = getAttributeValue(node, "field");
-            this.fieldCollectionType = toFieldCollectionType(getAttributeValue(node, "field-collection-type"));
-            this.target = getAttributeValue(node, "target");
+            this.name = attributes.get("name");
+            this.interfaceType = attributes.get("interface");
+            this.cardinality = toCardinality(attributes.get("cardinality"));
+            this.policy = toPolicy(attributes.get("policy"));
+            this.policyOption = toPolicyOption(attributes.get("policy-option"));
+            this.bind = attributes.get("bind");
+            this.unbind = attributes.get("unbind");
+            this.field = attributes.get("field");
+            this.fieldCollectionType = toFieldCollectionType(attributes.get("field-collection-type"));
+            this.target = attributes.get("target");
             if (StringUtils.isNotEmpty(this.target)) {
                 try {
-                    this.targetFilter = new FilterImpl(this.target);
+                    this.targetFilter = FilterCache.getFilter(this.target);
                 } catch (InvalidSyntaxException ex) {
                     throw new RuntimeException(
                             "Invalid target filter in reference '" + this.name + "' of class " + clazz.getName(), ex);
@@ -494,7 +377,7 @@ final class OsgiMetadataUtil {
             } else {
                 this.targetFilter = null;
             }
-            String parameterString = getAttributeValue(node, "parameter");
+            String parameterString = attributes.get("parameter");
             if (parameterString != null) {
                 this.parameter = Integer.valueOf(parameterString);
             }
@@ -635,7 +518,7 @@ final class OsgiMetadataUtil {
             this.target = target;
             if (StringUtils.isNotEmpty(this.target)) {
                 try {
-                    this.targetFilter = new FilterImpl(this.target);
+                    this.targetFilter = FilterCache.getFilter(this.target);
                 } catch (InvalidSyntaxException ex) {
                     throw new RuntimeException(
                             "Invalid target filter in reference '" + this.name + "' of class " + clazz.getName(), ex);
@@ -24,20 +24,25 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -62,6 +67,31 @@ import org.osgi.service.component.ComponentServiceObjects;
  */
 final class OsgiServiceUtil {
 
+    /**
+     * Resolved lifecycle methods. An empty Optional marks classes without matching method.
+     */
+    private static final ConcurrentMap<MemberKey, Optional<LifecycleMethod>> LIFECYCLE_METHODS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Resolved bind and unbind methods by target class, method name and reference interface type.
+     */
+    private static final ConcurrentMap<MemberKey, Optional<MethodInvoker>> BIND_UNBIND_METHODS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Resolved reference fields by target class, field name and reference interface type
+     * (or {@link ReferenceFieldType#COLLECTION} for multiple cardinality).
+     */
+    private static final ConcurrentMap<MemberKey, Optional<ReferenceField>> REFERENCE_FIELDS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Constructor injection plans by component class. An empty Optional marks classes without OSGi metadata.
+     */
+    private static final ConcurrentMap<Class<?>, Optional<ConstructorInjectionPlan>> CONSTRUCTOR_INJECTION_PLANS =
+            new ConcurrentHashMap<>();
+
     private OsgiServiceUtil() {
         // static methods only
     }
@@ -98,7 +128,11 @@ final class OsgiServiceUtil {
 
         // try to find matching activate/deactivate method and execute it
         if (invokeLifecycleMethod(
-                target, targetClass, methodName, !activate, componentContext, componentContext.getPropertiesAsMap())) {
+                target,
+                targetClass,
+                methodName,
+                activate ? LifecycleKind.ACTIVATE : LifecycleKind.DEACTIVATE,
+                componentContext)) {
             return true;
         }
 
@@ -131,7 +165,7 @@ final class OsgiServiceUtil {
         }
 
         // try to find matching modified method and execute it
-        if (invokeLifecycleMethod(target, targetClass, methodName, false, componentContext, properties)) {
+        if (invokeLifecycleMethod(target, targetClass, methodName, LifecycleKind.MODIFIED, componentContext)) {
             return true;
         }
 
@@ -144,147 +178,115 @@ final class OsgiServiceUtil {
      *     If none is found, then walk up the ancestor super classes to look for a match
      *
      * @param targetClass the class to start from
-     * @param fn the function to find and invoke the method, returns true if handled
-     * @return true if the method was found and invoked, false otherwise
+     * @param fn the function to find the method in a class, returns null if not found
+     * @return the nearest method or null if not found
      */
-    private static boolean findAndInvokeNearestMethod(Class<?> targetClass, Predicate<Class<?>> fn) {
-        boolean found = false;
-        do {
-            found = fn.test(targetClass);
-
-            if (!found) {
-                // not found? check super classes
-                Class<?> superClass = targetClass.getSuperclass();
-                if (superClass != null && superClass != Object.class) {
-                    // make the superClass the next candidate
-                    targetClass = superClass;
-                } else {
-                    // stop walking up
-                    targetClass = null;
-                }
+    private static @Nullable Method findNearestMethod(Class<?> targetClass, Function<Class<?>, Method> fn) {
+        Class<?> candidateClass = targetClass;
+        while (candidateClass != null) {
+            Method method = fn.apply(candidateClass);
+            if (method != null) {
+                return method;
             }
-        } while (!found && targetClass != null);
-
-        return found;
+            // not found? check super classes
+            Class<?> superClass = candidateClass.getSuperclass();
+            candidateClass = (superClass != null && superClass != Object.class) ? superClass : null;
+        }
+        return null;
     }
 
     /**
      * Invokes a lifecycle method (activation, deactivation or modified) with variable method arguments.
+     * The matching method is resolved only once per target class, method name and lifecycle kind.
      * @param target Target object
      * @param targetClass Target object class
      * @param methodName Method name
-     * @param allowIntegerArgument Allow int or Integer as arguments (only decactivate)
+     * @param kind Lifecycle kind
      * @param componentContext Component context
-     * @param properties Component properties
      * @return true if a method was found and invoked
      */
     private static boolean invokeLifecycleMethod(
             Object target,
             Class<?> targetClass,
             String methodName,
-            boolean allowIntegerArgument,
-            MockComponentContext componentContext,
-            Map<String, Object> properties) {
-
-        return findAndInvokeNearestMethod(targetClass, candidateClass -> {
-            // 1. componentContext
-            Method method = getMethod(candidateClass, methodName, new Class<?>[] {ComponentContext.class});
-            if (method != null) {
-                invokeMethod(target, method, new Object[] {componentContext});
-                return true;
-            }
+            LifecycleKind kind,
+            MockComponentContext componentContext) {
+        Optional<LifecycleMethod> lifecycleMethod = LIFECYCLE_METHODS.computeIfAbsent(
+                new MemberKey(targetClass, methodName, kind),
+                key -> Optional.ofNullable(findNearestMethod(
+                                targetClass, candidateClass -> getLifecycleMethod(candidateClass, methodName, kind)))
+                        .map(LifecycleMethod::new));
+        if (!lifecycleMethod.isPresent()) {
+            return false;
+        }
+        lifecycleMethod.get().invoke(target, componentContext);
+        return true;
+    }
 
-            // 2. bundleContext
-            method = getMethod(candidateClass, methodName, new Class<?>[] {BundleContext.class});
-            if (method != null) {
-                invokeMethod(target, method, new Object[] {componentContext.getBundleContext()});
-                return true;
-            }
+    /**
+     * Looks up a lifecycle method (activation, deactivation or modified) in the given class,
+     * checking the supported signatures in the order defined by the OSGi spec.
+     * @param candidateClass Class to check
+     * @param methodName Method name
+     * @param kind Lifecycle kind, int or Integer arguments are allowed only for deactivation
+     * @return Method or null if no matching method was found
+     */
+    private static @Nullable Method getLifecycleMethod(Class<?> candidateClass, String methodName, LifecycleKind kind) {
+        boolean allowIntegerArgument = kind == LifecycleKind.DEACTIVATE;
 
-            // 3. map
-            method = getMethod(candidateClass, methodName, new Class<?>[] {Map.class});
-            if (method != null) {
-                invokeMethod(target, method, new Object[] {componentContext.getPropertiesAsMap()});
-                return true;
-            }
+        // 1. componentContext
+        Method method = getMethod(candidateClass, methodName, new Class<?>[] {ComponentContext.class});
+        if (method != null) {
+            return method;
+        }
 
-            // 4. Component property type (annotation lass)
-            method = getMethod(candidateClass, methodName, new Class<?>[] {Annotation.class});
-            if (method != null) {
-                invokeMethod(target, method, new Object[] {
-                    Annotations.toObject(
-                            method.getParameterTypes()[0],
-                            componentContext.getPropertiesAsMap(),
-                            componentContext.getBundleContext().getBundle(),
-                            false)
-                });
-                return true;
-            }
+        // 2. bundleContext
+        method = getMethod(candidateClass, methodName, new Class<?>[] {BundleContext.class});
+        if (method != null) {
+            return method;
+        }
 
-            // 5. int (deactivation only)
-            if (allowIntegerArgument) {
-                method = getMethod(candidateClass, methodName, new Class<?>[] {int.class});
-                if (method != null) {
-                    invokeMethod(target, method, new Object[] {0});
-                    return true;
-                }
-            }
+        // 3. map
+        method = getMethod(candidateClass, methodName, new Class<?>[] {Map.class});
+        if (method != null) {
+            return method;
+        }
 
-            // 6. Integer (deactivation only)
-            if (allowIntegerArgument) {
-                method = getMethod(candidateClass, methodName, new Class<?>[] {Integer.class});
-                if (method != null) {
-                    invokeMethod(target, method, new Object[] {0});
-                    return true;
-                }
-            }
+        // 4. Component property type (annotation lass)
+        method = getMethod(candidateClass, methodName, new Class<?>[] {Annotation.class});
+        if (method != null) {
+            return method;
+        }
 
-            // 7. mixed arguments
-            Class<?>[] mixedArgsAllowed = allowIntegerArgument
-                    ? new Class<?>[] {
-                        ComponentContext.class,
-                        BundleContext.class,
-                        Map.class,
-                        Annotation.class,
-                        int.class,
-                        Integer.class
-                    }
-                    : new Class<?>[] {ComponentContext.class, BundleContext.class, Map.class, Annotation.class};
-            method = getMethodWithAnyCombinationArgs(candidateClass, methodName, mixedArgsAllowed);
+        // 5. int (deactivation only)
+        if (allowIntegerArgument) {
+            method = getMethod(candidateClass, methodName, new Class<?>[] {int.class});
             if (method != null) {
-                Object[] args = new Object[method.getParameterTypes().length];
-                for (int i = 0; i < args.length; i++) {
-                    if (method.getParameterTypes()[i] == ComponentContext.class) {
-                        args[i] = componentContext;
-                    } else if (method.getParameterTypes()[i] == BundleContext.class) {
-                        args[i] = componentContext.getBundleContext();
-                    } else if (method.getParameterTypes()[i] == Map.class) {
-                        args[i] = componentContext.getPropertiesAsMap();
-                    } else if (method.getParameterTypes()[i].isAnnotation()) {
-                        args[i] = Annotations.toObject(
-                                method.getParameterTypes()[i],
-                                componentContext.getPropertiesAsMap(),
-                                componentContext.getBundleContext().getBundle(),
-                                false);
-                    } else if (method.getParameterTypes()[i] == int.class
-                            || method.getParameterTypes()[i] == Integer.class) {
-                        args[i] = 0;
-                    }
-                }
-                invokeMethod(target, method, args);
-                return true;
+                return method;
             }
+        }
 
-            // 8. noargs
-            method = getMethod(candidateClass, methodName, new Class<?>[0]);
+        // 6. Integer (deactivation only)
+        if (allowIntegerArgument) {
+            method = getMethod(candidateClass, methodName, new Class<?>[] {Integer.class});
             if (method != null) {
-                invokeMethod(target, method, new Object[0]);
-                return true;
+                return method;
             }
+        }
 
-            // no match found
-            return false;
-        });
+        // 7. mixed arguments
+        Class<?>[] mixedArgsAllowed = allowIntegerArgument
+                ? new Class<?>[] {
+                    ComponentContext.class, BundleContext.class, Map.class, Annotation.class, int.class, Integer.class
+                }
+                : new Class<?>[] {ComponentContext.class, BundleContext.class, Map.class, Annotation.class};
+        method = getMethodWithAnyCombinationArgs(candidateClass, methodName, mixedArgsAllowed);
+        if (method != null) {
+            return method;
+        }
+
+        // 8. noargs
+        return getMethod(candidateClass, methodName, new Class<?>[0]);
     }
 
     private static Method getMethod(Class clazz, String methodName, Class<?>[] types) {
@@ -370,28 +372,6 @@ final class OsgiServiceUtil {
         return null;
     }
 
-    private static void invokeMethod(Object target, Method method, Object[] args) {
-        try {
-            method.setAccessible(true);
-            method.invoke(target, args);
-        } catch (IllegalAccessException ex) {
-            throw new RuntimeException(
-                    "Unable to invoke method '" + method.getName() + "' for class "
-                            + target.getClass().getName(),
-                    ex);
-        } catch (IllegalArgumentException ex) {
-            throw new RuntimeException(
-                    "Unable to invoke method '" + method.getName() + "' for class "
-                            + target.getClass().getName(),
-                    ex);
-        } catch (InvocationTargetException ex) {
-            throw new RuntimeException(
-                    "Unable to invoke method '" + method.getName() + "' for class "
-                            + target.getClass().getName(),
-                    ex.getCause());
-        }
-    }
-
     private static Field getField(Class clazz, String fieldName, Class<?> type) {
         Field[] fields = clazz.getDeclaredFields();
         for (Field field : fields) {
@@ -439,18 +419,6 @@ final class OsgiServiceUtil {
         return null;
     }
 
-    private static void setField(Object target, Field field, Object value) {
-        try {
-            field.setAccessible(true);
-            field.set(target, value);
-        } catch (IllegalAccessException | IllegalArgumentException ex) {
-            throw new RuntimeException(
-                    "Unable to set field '" + field.getName() + "' for class "
-                            + target.getClass().getName(),
-                    ex);
-        }
-    }
-
     /**
      * Simulate OSGi service dependency injection. Injects direct references and multiple references.
      * @param target Service instance
@@ -521,11 +489,27 @@ final class OsgiServiceUtil {
     private static @Nullable <T> T instantiateServiceWithActivateInject(
             Class<T> targetClass, MockComponentContext componentContext)
             throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-        OsgiMetadata metadata = OsgiMetadataUtil.getMetadata(targetClass);
-        if (metadata == null) {
+        Optional<ConstructorInjectionPlan> plan = CONSTRUCTOR_INJECTION_PLANS.computeIfAbsent(targetClass, key -> {
+            OsgiMetadata metadata = OsgiMetadataUtil.getMetadata(key);
+            if (metadata == null) {
+                return Optional.empty();
+            }
+            return Optional.of(buildConstructorInjectionPlan(key, metadata));
+        });
+        if (!plan.isPresent()) {
             return null;
         }
+        return (T) plan.get().instantiate(componentContext);
+    }
 
+    /**
+     * Selects the constructor for constructor injection and the source of each of its parameters.
+     * Only the parameter and reference types are checked, so the plan is independent of the registered services.
+     * @param targetClass Target class
+     * @param metadata OSGi metadata of target class
+     * @return Constructor injection plan
+     */
+    private static ConstructorInjectionPlan buildConstructorInjectionPlan(Class<?> targetClass, OsgiMetadata metadata) {
         // get list of constructor injection references, ordered by parameter number
         List<Reference> constructorInjectionReferences = metadata.getReferences().stream()
                 .filter(Reference::isConstructorParameter)
@@ -533,96 +517,77 @@ final class OsgiServiceUtil {
                 .collect(Collectors.toList());
 
         // go through all constructors and try to find a matching one
-        Constructor<T> matchingConstructor = null;
-        List<Object> constructorParamValues = null;
-        for (Constructor<T> constructor : (Constructor<T>[]) targetClass.getConstructors()) {
-            Optional<List<Object>> values = buildConstructorInjectionValues(
-                    targetClass, constructor, componentContext, constructorInjectionReferences);
-            if (values.isPresent()) {
-                matchingConstructor = constructor;
-                constructorParamValues = values.get();
-                break;
+        int checkedReferenceCount = 0;
+        for (Constructor<?> constructor : targetClass.getConstructors()) {
+            Iterator<Reference> referenceIterator = constructorInjectionReferences.iterator();
+            List<ConstructorParameter> parameters = new ArrayList<>();
+            int parameterIndex = 0;
+            boolean matching = true;
+            for (Parameter parameter : constructor.getParameters()) {
+                Class<?> parameterType = parameter.getType();
+                // check for well-known parameter types first
+                if (parameterType == ComponentContext.class
+                        || parameterType == BundleContext.class
+                        || parameterType == Map.class
+                        || parameterType.isAnnotation()) {
+                    parameters.add(new ConstructorParameter(parameterType, null, -1));
+                }
+                // check for reference injection
+                else if (referenceIterator.hasNext()) {
+                    Reference reference = referenceIterator.next();
+                    // references are always consumed in the same order, so the references checked are a prefix
+                    checkedReferenceCount = Math.max(checkedReferenceCount, parameterIndex + 1);
+                    if (!isConstructorInjectionSupported(parameterType, reference)) {
+                        // reference cannot be injected, constructor is invalid
+                        matching = false;
+                        break;
+                    }
+                    parameters.add(new ConstructorParameter(parameterType, reference, parameterIndex++));
+                } else {
+                    // parameter does not match, constructor is invalid
+                    matching = false;
+                    break;
+                }
+            }
+            if (matching) {
+                return new ConstructorInjectionPlan(
+                        targetClass,
+                        constructor,
+                        parameters,
+                        constructorInjectionReferences.subList(0, checkedReferenceCount));
             }
         }
-        if (matchingConstructor != null && constructorParamValues != null) {
-            return matchingConstructor.newInstance(constructorParamValues.toArray(new Object[0]));
-        } else {
-            return null;
-        }
+        return new ConstructorInjectionPlan(
+                targetClass, null, List.of(), constructorInjectionReferences.subList(0, checkedReferenceCount));
     }
 
-    private static <T> Optional<List<Object>> buildConstructorInjectionValues(
-            Class<T> targetClass,
-            Constructor<T> constructor,
-            MockComponentContext componentContext,
-            List<Reference> constructorInjectionReferences)
-            throws InstantiationException, IllegalAccessException {
-        Iterator<Reference> referenceIterator = constructorInjectionReferences.iterator();
-        List<Object> values = new ArrayList<>();
-        int parameterIndex = 0;
-        for (Parameter parameter : constructor.getParameters()) {
-            // check for well-known parameter types first
-            if (parameter.getType() == ComponentContext.class) {
-                values.add(componentContext);
-            } else if (parameter.getType() == BundleContext.class) {
-                values.add(componentContext.getBundleContext());
-            } else if (parameter.getType() == Map.class) {
-                values.add(componentContext.getPropertiesAsMap());
-            } else if (parameter.getType().isAnnotation()) {
-                values.add(Annotations.toObject(
-                        parameter.getType(),
-                        componentContext.getPropertiesAsMap(),
-                        componentContext.getBundleContext().getBundle(),
-                        false));
-            }
-            // check for reference injection
-            else if (referenceIterator.hasNext()) {
-                Reference reference = referenceIterator.next();
-                Optional<?> referenceValue = buildConstructorInjectionValue(
-                        targetClass, parameter.getType(), reference, componentContext, parameterIndex++);
-                if (referenceValue != null) {
-                    values.add(referenceValue.isPresent() ? referenceValue.get() : null);
-                } else {
-                    // reference not found, constructor is invalid
-                    return Optional.empty();
-                }
-            } else {
-                // parameter does not match, constructor is invalid
-                return Optional.empty();
-            }
+    private static boolean isConstructorInjectionSupported(Class<?> parameterType, Reference reference) {
+        if (reference.isCardinalityMultiple()) {
+            return true;
         }
-        return Optional.of(values);
+        return parameterType.isAssignableFrom(reference.getInterfaceTypeAsClass())
+                || parameterType == ServiceReference.class
+                || parameterType == ComponentServiceObjects.class;
     }
 
     /**
      * Build value to be injected in constructor parameter.
-     * @param <T> Parameter type
      * @param targetClass Target class containing the constructor
      * @param parameterType Parameter type
      * @param reference Reference
-     * @param componentContext Component context
+     * @param matchingServices Matching services for reference
      * @param parameterIndex 0-based index of the constructor parameter for which the injection value is calculated
-     * @return null if parameter could not be injected, empty Optional if null value should be injected, or value wrapped in Optional otherwise
+     * @return Value to inject, may be null
      * @throws InstantiationException
      * @throws IllegalAccessException
      */
-    private static <T> @Nullable Optional<?> buildConstructorInjectionValue(
+    private static @Nullable Object buildConstructorInjectionValue(
             Class<?> targetClass,
-            Class<T> parameterType,
+            Class<?> parameterType,
             Reference reference,
-            MockComponentContext componentContext,
+            List<ServiceInfo<?>> matchingServices,
             int parameterIndex)
             throws InstantiationException, IllegalAccessException {
-        Class<?> type = reference.getInterfaceTypeAsClass();
-        // get matching service references
-        List<ServiceInfo<?>> matchingServices =
-                getMatchingServices(type, componentContext.getBundleContext(), reference.getTarget());
-
-        if (matchingServices.isEmpty() && !reference.isCardinalityOptional()) {
-            throw new ReferenceViolationException("Unable to inject mandatory reference '" + reference.getName() + "' ("
-                    + type.getName() + ") into constructor parameter " + parameterIndex + " for class "
-                    + targetClass.getName() + " : no matching services were found.");
-        }
 
         // check for field with list/collection reference
         if (reference.isCardinalityMultiple()) {
@@ -641,35 +606,28 @@ final class OsgiServiceUtil {
                     break;
                 default:
                     throw new RuntimeException("Field collection type '" + reference.getFieldCollectionType()
-                            + "' not supported " + "for reference '" + reference.getName() + "' (" + type.getName()
-                            + ") into constructor parameter " + parameterIndex + " for class " + targetClass.getName());
+                            + "' not supported " + "for reference '" + reference.getName() + "' ("
+                            + reference.getInterfaceTypeAsClass().getName() + ") into constructor parameter "
+                            + parameterIndex + " for class " + targetClass.getName());
             }
-            return Optional.of(collection);
+            return collection;
         }
 
         // check for single field reference
-        else {
-            Optional<ServiceInfo<?>> firstServiceInfo =
-                    matchingServices.stream().findFirst();
+        Optional<ServiceInfo<?>> firstServiceInfo = matchingServices.stream().findFirst();
 
-            // 1. assignable from service instance
-            if (parameterType.isAssignableFrom(reference.getInterfaceTypeAsClass())) {
-                return firstServiceInfo.map(ServiceInfo::getService);
-            }
-
-            // 2. ServiceReference
-            if (parameterType == ServiceReference.class) {
-                return firstServiceInfo.map(ServiceInfo::getServiceReference);
-            }
+        // 1. assignable from service instance
+        if (parameterType.isAssignableFrom(reference.getInterfaceTypeAsClass())) {
+            return firstServiceInfo.map(ServiceInfo::getService).orElse(null);
+        }
 
-            // 3. ServiceReference
-            if (parameterType == ComponentServiceObjects.class) {
-                return firstServiceInfo;
-            }
+        // 2. ServiceReference
+        if (parameterType == ServiceReference.class) {
+            return firstServiceInfo.map(ServiceInfo::getServiceReference).orElse(null);
         }
 
-        // no match
-        return null;
+        // 3. ComponentServiceObjects
+        return firstServiceInfo.orElse(null);
     }
 
     private static void injectServiceReference(Reference reference, Object target, BundleContext bundleContext) {
@@ -720,67 +678,19 @@ final class OsgiServiceUtil {
         String fieldName = reference.getField();
 
         if (StringUtils.isNotEmpty(methodName) && serviceInfo != null) {
-
-            boolean found = findAndInvokeNearestMethod(targetClass, candidateClass -> {
-                // 1. ServiceReference
-                Method method = getMethod(candidateClass, methodName, new Class<?>[] {ServiceReference.class});
-                if (method != null) {
-                    invokeMethod(target, method, new Object[] {serviceInfo.getServiceReference()});
-                    return true;
-                }
-
-                // 2. ComponentServiceObjects
-                method = getMethod(candidateClass, methodName, new Class<?>[] {ComponentServiceObjects.class});
-                if (method != null) {
-                    invokeMethod(target, method, new Object[] {serviceInfo});
-                    return true;
-                }
-
-                // 3. assignable from service instance
-                Class<?> interfaceType = reference.getInterfaceTypeAsClass();
-                method = getMethodWithAssignableTypes(candidateClass, methodName, new Class<?>[] {interfaceType});
-                if (method != null) {
-                    invokeMethod(target, method, new Object[] {serviceInfo.getService()});
-                    return true;
-                }
-
-                // 4. Map
-                method = getMethod(candidateClass, methodName, new Class<?>[] {Map.class});
-                if (method != null) {
-                    invokeMethod(target, method, new Object[] {serviceInfo.getServiceConfig()});
-                    return true;
-                }
-
-                // 5. mixed arguments
-                Class<?>[] mixedArgsAllowed =
-                        new Class<?>[] {ServiceReference.class, ComponentServiceObjects.class, interfaceType, Map.class
-                        };
-                method = getMethodWithAnyCombinationArgs(candidateClass, methodName, mixedArgsAllowed);
-                if (method != null) {
-                    Object[] args = new Object[method.getParameterTypes().length];
-                    for (int i = 0; i < args.length; i++) {
-                        if (method.getParameterTypes()[i] == ServiceReference.class) {
-                            args[i] = serviceInfo.getServiceReference();
-                        } else if (method.getParameterTypes()[i] == ComponentServiceObjects.class) {
-                            args[i] = serviceInfo;
-                        } else if (method.getParameterTypes()[i].isAssignableFrom(interfaceType)) {
-                            args[i] = serviceInfo.getService();
-                        } else if (method.getParameterTypes()[i] == Map.class) {
-                            args[i] = serviceInfo.getServiceConfig();
-                        }
-                    }
-                    invokeMethod(target, method, args);
-                    return true;
-                }
-
-                return false;
-            });
-
-            if (!found) {
+            Class<?> interfaceType = reference.getInterfaceTypeAsClass();
+            Optional<MethodInvoker> method = BIND_UNBIND_METHODS.computeIfAbsent(
+                    new MemberKey(targetClass, methodName, interfaceType),
+                    key -> Optional.ofNullable(findNearestMethod(
+                                    targetClass,
+                                    candidateClass -> getBindUnbindMethod(candidateClass, methodName, interfaceType)))
+                            .map(MethodInvoker::new));
+            if (!method.isPresent()) {
                 throw new RuntimeException(
                         (bind ? "Bind" : "Unbind") + " method with name " + methodName + " not found "
                                 + "for reference '" + reference.getName() + "' for class " + targetClass.getName());
             }
+            method.get().invoke(target, getBindUnbindArgs(method.get(), interfaceType, serviceInfo));
         }
 
         // OSGi declarative services 1.3 supports modifying the field directly
@@ -792,11 +702,11 @@ final class OsgiServiceUtil {
                     case SERVICE:
                     case REFERENCE:
                     case SERVICEOBJECTS:
-                        Field field = getCollectionField(targetClass, fieldName);
-                        if (field != null) {
+                        Optional<ReferenceField> field = getReferenceField(targetClass, fieldName, null);
+                        if (field.isPresent()) {
                             // to make sure components are consistently sorted (according to Felix sorting)
                             // we (re-)bind the entire collection field every time a reference is added or removed
-                            bindCollectionReference(reference, bundleContext, target, field);
+                            bindCollectionReference(reference, bundleContext, target, field.get().getField());
                         }
                         break;
                     default:
@@ -809,43 +719,126 @@ final class OsgiServiceUtil {
 
             // check for single field reference
             else {
-                // 1. assignable from service instance
-                Class<?> interfaceType = reference.getInterfaceTypeAsClass();
-                Field field = getFieldWithAssignableType(targetClass, fieldName, interfaceType);
-                final boolean servicePresent = bind && serviceInfo != null;
-                if (field != null) {
-                    setField(target, field, servicePresent ? serviceInfo.getService() : null);
-                    return;
+                Optional<ReferenceField> field =
+                        getReferenceField(targetClass, fieldName, reference.getInterfaceTypeAsClass());
+                if (field.isPresent()) {
+                    field.get().set(target, bind ? serviceInfo : null);
                 }
+            }
+        }
+    }
 
-                // 2. ServiceReference
-                field = getField(targetClass, fieldName, ServiceReference.class);
-                if (field != null) {
-                    setField(target, field, servicePresent ? serviceInfo.getServiceReference() : null);
-                    return;
-                }
+    /**
+     * Looks up a bind or unbind method in the given class, checking the supported signatures in the order
+     * defined by the OSGi spec.
+     * @param candidateClass Class to check
+     * @param methodName Method name
+     * @param interfaceType Reference interface type
+     * @return Method or null if no matching method was found
+     */
+    private static @Nullable Method getBindUnbindMethod(
+            Class<?> candidateClass, String methodName, Class<?> interfaceType) {
+        // 1. ServiceReference
+        Method method = getMethod(candidateClass, methodName, new Class<?>[] {ServiceReference.class});
+        if (method != null) {
+            return method;
+        }
 
-                // 3. ComponentServiceObjects
-                field = getField(targetClass, fieldName, ComponentServiceObjects.class);
-                if (field != null) {
-                    setField(target, field, servicePresent ? serviceInfo : null);
-                    return;
-                }
+        // 2. ComponentServiceObjects
+        method = getMethod(candidateClass, methodName, new Class<?>[] {ComponentServiceObjects.class});
+        if (method != null) {
+            return method;
+        }
 
-                // 4. Optional
-                field = getField(targetClass, fieldName, Optional.class);
-                if (field != null) {
-                    setField(target, field, servicePresent ? Optional.of(serviceInfo.getService()) : Optional.empty());
-                }
+        // 3. assignable from service instance
+        method = getMethodWithAssignableTypes(candidateClass, methodName, new Class<?>[] {interfaceType});
+        if (method != null) {
+            return method;
+        }
+
+        // 4. Map
+        method = getMethod(candidateClass, methodName, new Class<?>[] {Map.class});
+        if (method != null) {
+            return method;
+        }
+
+        // 5. mixed arguments
+        Class<?>[] mixedArgsAllowed =
+                new Class<?>[] {ServiceReference.class, ComponentServiceObjects.class, interfaceType, Map.class};
+        return getMethodWithAnyCombinationArgs(candidateClass, methodName, mixedArgsAllowed);
+    }
+
+    private static Object[] getBindUnbindArgs(
+            MethodInvoker method, Class<?> interfaceType, ServiceInfo<?> serviceInfo) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Object[] args = new Object[parameterTypes.length];
+        for (int i = 0; i < args.length; i++) {
+            if (parameterTypes[i] == ServiceReference.class) {
+                args[i] = serviceInfo.getServiceReference();
+            } else if (parameterTypes[i] == ComponentServiceObjects.class) {
+                args[i] = serviceInfo;
+            } else if (parameterTypes[i].isAssignableFrom(interfaceType)) {
+                args[i] = serviceInfo.getService();
+            } else if (parameterTypes[i] == Map.class) {
+                args[i] = serviceInfo.getServiceConfig();
             }
         }
+        return args;
+    }
+
+    /**
+     * Get resolved reference field.
+     * @param targetClass Target class
+     * @param fieldName Field name
+     * @param interfaceType Reference interface type, or null for references with multiple cardinality
+     * @return Reference field or empty if no matching field was found
+     */
+    private static Optional<ReferenceField> getReferenceField(
+            Class<?> targetClass, String fieldName, @Nullable Class<?> interfaceType) {
+        Object qualifier = interfaceType != null ? interfaceType : ReferenceFieldType.COLLECTION;
+        return REFERENCE_FIELDS.computeIfAbsent(
+                new MemberKey(targetClass, fieldName, qualifier),
+                key -> Optional.ofNullable(resolveReferenceField(targetClass, fieldName, interfaceType)));
+    }
+
+    private static @Nullable ReferenceField resolveReferenceField(
+            Class<?> targetClass, String fieldName, @Nullable Class<?> interfaceType) {
+        if (interfaceType == null) {
+            Field field = getCollectionField(targetClass, fieldName);
+            return field != null ? new ReferenceField(field, ReferenceFieldType.COLLECTION) : null;
+        }
+
+        // 1. assignable from service instance
+        Field field = getFieldWithAssignableType(targetClass, fieldName, interfaceType);
+        if (field != null) {
+            return new ReferenceField(field, ReferenceFieldType.SERVICE);
+        }
+
+        // 2. ServiceReference
+        field = getField(targetClass, fieldName, ServiceReference.class);
+        if (field != null) {
+            return new ReferenceField(field, ReferenceFieldType.REFERENCE);
+        }
+
+        // 3. ComponentServiceObjects
+        field = getField(targetClass, fieldName, ComponentServiceObjects.class);
+        if (field != null) {
+            return new ReferenceField(field, ReferenceFieldType.SERVICEOBJECTS);
+        }
+
+        // 4. Optional
+        field = getField(targetClass, fieldName, Optional.class);
+        if (field != null) {
+            return new ReferenceField(field, ReferenceFieldType.OPTIONAL);
+        }
+
+        return null;
     }
 
     @SuppressWarnings("unchecked")
     private static void bindCollectionReference(
-            Reference reference, BundleContext bundleContext, Object target, Field field) {
+            Reference reference, BundleContext bundleContext, Object target, FieldInvoker field) {
         try {
-            field.setAccessible(true);
             Collection<Object> collection = (Collection<Object>) field.get(target);
             if (collection == null) {
                 collection = newCollectionInstance(field.getType());
@@ -915,30 +908,27 @@ final class OsgiServiceUtil {
 
     @SuppressWarnings("unchecked")
     private static List<ServiceInfo<?>> getMatchingServices(Class<?> type, BundleContext bundleContext, String filter) {
-        List<ServiceInfo<?>> matchingServices = new ArrayList<>();
         try {
             ServiceReference[] references = bundleContext.getServiceReferences(type.getName(), filter);
-            if (references != null) {
-                for (ServiceReference<?> serviceReference : references) {
-                    Object serviceInstance = bundleContext.getService(serviceReference);
-                    Map<String, Object> serviceConfig = new HashMap<>();
-                    String[] keys = serviceReference.getPropertyKeys();
-                    for (String key : keys) {
-                        serviceConfig.put(key, serviceReference.getProperty(key));
-                    }
-                    matchingServices.add(new ServiceInfo(serviceInstance, serviceConfig, serviceReference));
-                }
+            if (references == null) {
+                return new ArrayList<>();
+            }
+            List<ServiceInfo<?>> matchingServices = new ArrayList<>(references.length);
+            for (ServiceReference<?> serviceReference : references) {
+                Object serviceInstance = bundleContext.getService(serviceReference);
+                matchingServices.add(new ServiceInfo(serviceInstance, serviceReference));
             }
+            return matchingServices;
         } catch (InvalidSyntaxException ex) {
             // ignore
+            return new ArrayList<>();
         }
-        return matchingServices;
     }
 
     /**
      * Collects all references of any registered service that match with any of the exported interfaces of the given service registration
      * and are defined as DYNAMIC.
-     * @param registeredServices Registered Services
+     * @param registeredServices Registered services to check for matching references
      * @param registration Service registration
      * @return List of references
      */
@@ -971,7 +961,7 @@ final class OsgiServiceUtil {
     /**
      * Collects all references of any registered service that match with any of the exported interfaces of the given service registration
      * and are defined as STATIC + GREEDY.
-     * @param registeredServices Registered Services
+     * @param registeredServices Registered services to check for matching references
      * @param registration Service registration
      * @return List of references
      */
@@ -1001,26 +991,37 @@ final class OsgiServiceUtil {
     static class ServiceInfo<T> implements ComponentServiceObjects<T> {
 
         private final T serviceInstance;
-        private final Map<String, Object> serviceConfig;
         private final ServiceReference<T> serviceReference;
+        private final Map<String, Object> serviceProperties;
+        private volatile Map<String, Object> serviceConfig;
 
-        public ServiceInfo(T serviceInstance, Map<String, Object> serviceConfig, ServiceReference<T> serviceReference) {
+        public ServiceInfo(T serviceInstance, ServiceReference<T> serviceReference) {
             this.serviceInstance = serviceInstance;
-            this.serviceConfig = new ComparableMap(serviceConfig);
             this.serviceReference = serviceReference;
+            // keep the property snapshot valid at this time, the properties of the service may change later
+            if (serviceReference instanceof MockServiceReference) {
+                this.serviceProperties = ((MockServiceReference<T>) serviceReference).getPropertiesAsMap();
+            } else {
+                this.serviceProperties = MapUtil.toMap(serviceReference.getProperties());
+            }
         }
 
         public ServiceInfo(MockServiceRegistration<T> registration) {
-            this.serviceInstance = registration.getService();
-            this.serviceConfig = new ComparableMap(registration.getPropertiesAsMap());
-            this.serviceReference = registration.getReference();
+            this(registration.getService(), registration.getReference());
         }
 
         public T getService() {
             return this.serviceInstance;
         }
 
+        /**
+         * @return View of the service properties at the time this service info was created, created on first
+         *         access and copied on first modification
+         */
         public Map<String, Object> getServiceConfig() {
+            if (this.serviceConfig == null) {
+                this.serviceConfig = new ComparableMap(this.serviceProperties);
+            }
             return this.serviceConfig;
         }
 
@@ -1049,12 +1050,133 @@ final class OsgiServiceUtil {
         }
     }
 
-    static class ComparableMap extends Hashtable<String, Object> implements Comparable<ComparableMap> {
+    /**
+     * Properties of a service reference, comparable by service ranking.
+     * The map is a view of the immutable property snapshot of the service registration, so no copy is needed
+     * for bind methods that only read the properties. On the first modification - including
+     * {@link Map.Entry#setValue(Object)} on an entry obtained via {@link #entrySet()} - the snapshot is copied
+     * exactly once, so bind methods may still modify their argument as with the <code>Hashtable</code> copy
+     * used before, also when called from different threads.
+     */
+    static class ComparableMap extends AbstractMap<String, Object> implements Comparable<ComparableMap> {
+
+        private volatile Map<String, Object> properties;
+        private volatile boolean copied;
+
+        /**
+         * @param properties Immutable snapshot of the service properties
+         */
+        public ComparableMap(final Map<String, Object> properties) {
+            this.properties = properties;
+        }
+
+        private Map<String, Object> getModifiableProperties() {
+            if (!copied) {
+                synchronized (this) {
+                    if (!copied) {
+                        // publish the copy before the flag, readers checking the flag see the copy
+                        properties = new ConcurrentHashMap<>(properties);
+                        copied = true;
+                    }
+                }
+            }
+            return properties;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            return properties.get(key);
+        }
 
-        private static final long serialVersionUID = 1L;
+        @Override
+        public boolean containsKey(final Object key) {
+            return properties.containsKey(key);
+        }
 
-        public ComparableMap(final Map<String, Object> map) {
-            super(map);
+        @Override
+        public int size() {
+            return properties.size();
+        }
+
+        @Override
+        public Object put(final String key, final Object value) {
+            return getModifiableProperties().put(key, value);
+        }
+
+        @Override
+        public Object remove(final Object key) {
+            return getModifiableProperties().remove(key);
+        }
+
+        @Override
+        public void putAll(final Map<? extends String, ? extends Object> map) {
+            getModifiableProperties().putAll(map);
+        }
+
+        @Override
+        public void clear() {
+            getModifiableProperties().clear();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    if (copied) {
+                        return properties.entrySet().iterator();
+                    }
+                    Iterator<Map.Entry<String, Object>> snapshotIterator =
+                            Collections.unmodifiableMap(properties).entrySet().iterator();
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private Map.Entry<String, Object> current;
+
+                        @Override
+                        public boolean hasNext() {
+                            return snapshotIterator.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            Map.Entry<String, Object> entry = snapshotIterator.next();
+                            current = new SnapshotEntry(entry.getKey(), entry.getValue());
+                            return current;
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (current == null) {
+                                throw new IllegalStateException();
+                            }
+                            // keep iterating the snapshot, remove from the copy
+                            getModifiableProperties().remove(current.getKey());
+                            current = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return properties.size();
+                }
+            };
+        }
+
+        /**
+         * Entry of the property snapshot, writes changed values through to the copy.
+         */
+        private final class SnapshotEntry extends AbstractMap.SimpleEntry<String, Object> {
+            private static final long serialVersionUID = 1L;
+
+            SnapshotEntry(final String key, final Object value) {
+                super(key, value);
+            }
+
+            @Override
+            public Object setValue(final Object value) {
+                getModifiableProperties().put(getKey(), value);
+                return super.setValue(value);
+            }
         }
 
         @Override
@@ -1107,4 +1229,228 @@ final class OsgiServiceUtil {
             return reference;
         }
     }
+
+    private enum LifecycleKind {
+        ACTIVATE,
+        DEACTIVATE,
+        MODIFIED
+    }
+
+    /**
+     * Cache key for resolved methods and fields.
+     */
+    private static final class MemberKey {
+
+        private final Class<?> targetClass;
+        private final String name;
+        private final Object qualifier;
+
+        /**
+         * @param targetClass Target class
+         * @param name Method or field name
+         * @param qualifier Lifecycle kind or reference interface type
+         */
+        MemberKey(Class<?> targetClass, String name, Object qualifier) {
+            this.targetClass = targetClass;
+            this.name = name;
+            this.qualifier = qualifier;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(targetClass, name, qualifier);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MemberKey)) {
+                return false;
+            }
+            MemberKey other = (MemberKey) obj;
+            return targetClass == other.targetClass
+                    && StringUtils.equals(name, other.name)
+                    && Objects.equals(qualifier, other.qualifier);
+        }
+    }
+
+    /**
+     * Resolved lifecycle method. The arguments are derived from the parameter types.
+     */
+    private static final class LifecycleMethod {
+
+        private final MethodInvoker invoker;
+
+        LifecycleMethod(Method method) {
+            this.invoker = new MethodInvoker(method);
+        }
+
+        void invoke(Object target, MockComponentContext componentContext) {
+            Class<?>[] parameterTypes = invoker.getParameterTypes();
+            Object[] args = new Object[parameterTypes.length];
+            for (int i = 0; i < args.length; i++) {
+                if (parameterTypes[i] == ComponentContext.class) {
+                    args[i] = componentContext;
+                } else if (parameterTypes[i] == BundleContext.class) {
+                    args[i] = componentContext.getBundleContext();
+                } else if (parameterTypes[i] == Map.class) {
+                    args[i] = componentContext.getPropertiesAsMap();
+                } else if (parameterTypes[i].isAnnotation()) {
+                    args[i] = Annotations.toObject(
+                            parameterTypes[i],
+                            componentContext.getPropertiesAsMap(),
+                            componentContext.getBundleContext().getBundle(),
+                            false);
+                } else if (parameterTypes[i] == int.class || parameterTypes[i] == Integer.class) {
+                    args[i] = 0;
+                }
+            }
+            invoker.invoke(target, args);
+        }
+    }
+
+    private enum ReferenceFieldType {
+        SERVICE,
+        REFERENCE,
+        SERVICEOBJECTS,
+        OPTIONAL,
+        COLLECTION
+    }
+
+    /**
+     * Resolved reference field. The value is derived from the field type.
+     */
+    private static final class ReferenceField {
+
+        private final FieldInvoker field;
+        private final ReferenceFieldType type;
+
+        ReferenceField(Field field, ReferenceFieldType type) {
+            this.field = new FieldInvoker(field);
+            this.type = type;
+        }
+
+        FieldInvoker getField() {
+            return field;
+        }
+
+        /**
+         * Set single reference field.
+         * @param target Target object
+         * @param serviceInfo Bound service or null to reset the field
+         */
+        void set(Object target, ServiceInfo<?> serviceInfo) {
+            switch (type) {
+                case SERVICE:
+                    field.set(target, serviceInfo != null ? serviceInfo.getService() : null);
+                    break;
+                case REFERENCE:
+                    field.set(target, serviceInfo != null ? serviceInfo.getServiceReference() : null);
+                    break;
+                case SERVICEOBJECTS:
+                    field.set(target, serviceInfo);
+                    break;
+                case OPTIONAL:
+                    field.set(target, serviceInfo != null ? Optional.of(serviceInfo.getService()) : Optional.empty());
+                    break;
+                default:
+                    throw new IllegalStateException("Not a single reference field: " + field.getName());
+            }
+        }
+    }
+
+    /**
+     * Source of a constructor parameter: Either a well-known type derived from the component context,
+     * or a reference.
+     */
+    private static final class ConstructorParameter {
+
+        private final Class<?> type;
+        private final Reference reference;
+        private final int referenceIndex;
+
+        ConstructorParameter(Class<?> type, @Nullable Reference reference, int referenceIndex) {
+            this.type = type;
+            this.reference = reference;
+            this.referenceIndex = referenceIndex;
+        }
+    }
+
+    /**
+     * Immutable plan for instantiating a component class via constructor injection, computed once per class.
+     */
+    private static final class ConstructorInjectionPlan {
+
+        private final Class<?> targetClass;
+        private final Constructor<?> constructor;
+        private final List<ConstructorParameter> parameters;
+        private final List<Reference> checkedReferences;
+
+        /**
+         * @param targetClass Target class
+         * @param constructor Matching constructor or null if no constructor matches
+         * @param parameters Sources of the constructor parameters
+         * @param checkedReferences References checked for mandatory services while selecting the constructor
+         */
+        ConstructorInjectionPlan(
+                Class<?> targetClass,
+                @Nullable Constructor<?> constructor,
+                List<ConstructorParameter> parameters,
+                List<Reference> checkedReferences) {
+            this.targetClass = targetClass;
+            this.constructor = constructor;
+            this.parameters = List.copyOf(parameters);
+            this.checkedReferences = List.copyOf(checkedReferences);
+        }
+
+        /**
+         * @param componentContext Component context
+         * @return New instance or null if no constructor matches
+         */
+        @Nullable Object instantiate(MockComponentContext componentContext)
+                throws InstantiationException, IllegalAccessException, InvocationTargetException {
+            // get matching services, and check mandatory references checked when selecting the constructor
+            List<List<ServiceInfo<?>>> matchingServicesByReference = new ArrayList<>();
+            for (int i = 0; i < checkedReferences.size(); i++) {
+                Reference reference = checkedReferences.get(i);
+                Class<?> type = reference.getInterfaceTypeAsClass();
+                List<ServiceInfo<?>> matchingServices =
+                        getMatchingServices(type, componentContext.getBundleContext(), reference.getTarget());
+                if (matchingServices.isEmpty() && !reference.isCardinalityOptional()) {
+                    throw new ReferenceViolationException("Unable to inject mandatory reference '"
+                            + reference.getName() + "' (" + type.getName() + ") into constructor parameter " + i
+                            + " for class " + targetClass.getName() + " : no matching services were found.");
+                }
+                matchingServicesByReference.add(matchingServices);
+            }
+            if (constructor == null) {
+                return null;
+            }
+
+            Object[] values = new Object[parameters.size()];
+            for (int i = 0; i < values.length; i++) {
+                ConstructorParameter parameter = parameters.get(i);
+                if (parameter.type == ComponentContext.class) {
+                    values[i] = componentContext;
+                } else if (parameter.type == BundleContext.class) {
+                    values[i] = componentContext.getBundleContext();
+                } else if (parameter.type == Map.class) {
+                    values[i] = componentContext.getPropertiesAsMap();
+                } else if (parameter.reference == null) {
+                    values[i] = Annotations.toObject(
+                            parameter.type,
+                            componentContext.getPropertiesAsMap(),
+                            componentContext.getBundleContext().getBundle(),
+                            false);
+                } else {
+                    values[i] = buildConstructorInjectionValue(
+                            targetClass,
+                            parameter.type,
+                            parameter.reference,
+                            matchingServicesByReference.get(parameter.referenceIndex),
+                            parameter.referenceIndex);
+                }
+            }
+            return constructor.newInstance(values);
+        }
+    }
 }
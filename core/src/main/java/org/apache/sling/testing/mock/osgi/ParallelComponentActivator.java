@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.OsgiMetadata;
+import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.Reference;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Activates or deactivates a set of DS components in parallel, respecting the dependencies between them.
+ * <p>
+ * A component depends on all other components of the set that provide a service interface it has a reference to.
+ * It is activated only after all of them are activated and registered, independent components are activated
+ * concurrently. If the references form a cycle, the component given first is activated first.
+ * </p>
+ * <p>
+ * Only the activation (including the injection of references) runs in parallel, the registrations are serialized,
+ * as registering a service may bind or restart other components. On deactivation the order is reversed.
+ * </p>
+ * <p>
+ * The tasks run on a dedicated pool of daemon threads, bounded by the number of available processors and shut down
+ * when all tasks are finished. Activate and deactivate methods may block, so the common fork-join pool shared with
+ * other code in the JVM is not used.
+ * </p>
+ */
+final class ParallelComponentActivator {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private ParallelComponentActivator() {
+        // static methods only
+    }
+
+    /**
+     * Activates and registers the components. If an activation fails, the components registered so far are
+     * unregistered and deactivated again in reverse registration order before the failure is rethrown, so no
+     * partially activated set of components is left behind.
+     * @param <T> Type of activated components
+     * @param componentClasses Component classes, used to resolve the dependencies between the components
+     * @param activator Injects references and activates the component with the given index
+     * @param registrar Registers an activated component
+     * @param unregistrar Unregisters and deactivates a registered component
+     * @return Activated components, in the order of the given component classes
+     */
+    static @NotNull <T> List<T> activate(
+            @NotNull List<Class<?>> componentClasses,
+            @NotNull IntFunction<T> activator,
+            @NotNull Consumer<T> registrar,
+            @NotNull Consumer<T> unregistrar) {
+        List<Set<Integer>> dependencies = getDependencies(componentClasses);
+        List<T> registered = new ArrayList<>();
+        try {
+            return run(
+                    dependencies,
+                    index -> {
+                        T component = activator.apply(index);
+                        synchronized (registered) {
+                            registrar.accept(component);
+                            registered.add(component);
+                        }
+                        return component;
+                    });
+        } catch (RuntimeException | Error ex) {
+            // all tasks are finished at this point
+            for (int i = registered.size() - 1; i >= 0; i--) {
+                try {
+                    unregistrar.accept(registered.get(i));
+                } catch (RuntimeException rollbackEx) {
+                    ex.addSuppressed(rollbackEx);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Deactivates components in reverse dependency order: a component is deactivated after all components
+     * with a reference to it are deactivated, independent components are deactivated concurrently.
+     * If the references form a cycle, the component given first is deactivated first.
+     * @param <T> Type of components
+     * @param components Components
+     * @param dependencies Indexes of the components each component has a reference to
+     * @param deactivator Deactivates a component
+     */
+    static <T> void deactivate(
+            @NotNull List<T> components, @NotNull List<Set<Integer>> dependencies, @NotNull Consumer<T> deactivator) {
+        List<Set<Integer>> dependents = new ArrayList<>(components.size());
+        for (int i = 0; i < components.size(); i++) {
+            dependents.add(new LinkedHashSet<>());
+        }
+        for (int i = 0; i < components.size(); i++) {
+            for (int dependency : dependencies.get(i)) {
+                dependents.get(dependency).add(i);
+            }
+        }
+        run(
+                dependents,
+                index -> {
+                    deactivator.accept(components.get(index));
+                    return null;
+                });
+    }
+
+    /**
+     * Runs a task for each component on a dedicated pool, after the tasks of all its dependencies are finished.
+     * Returns or throws only after all tasks that could be started are finished.
+     * @param dependencies Indexes of the components whose tasks have to finish first
+     * @param task Task for the component with the given index
+     * @return Results of the tasks, in component order
+     */
+    private static <T> List<T> run(List<Set<Integer>> dependencies, IntFunction<T> task) {
+        if (dependencies.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Integer> order = getActivationOrder(dependencies);
+        int threadCount = Math.min(dependencies.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "osgi-mock-component-activator-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<T>> futures = new ArrayList<>(Collections.nCopies(dependencies.size(), null));
+            Set<Integer> scheduled = new HashSet<>();
+            for (int index : order) {
+                // ignore dependencies scheduled later, only the case for cycles
+                CompletableFuture<?>[] dependencyFutures = dependencies.get(index).stream()
+                        .filter(scheduled::contains)
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.set(
+                        index,
+                        CompletableFuture.allOf(dependencyFutures)
+                                .thenApplyAsync(result -> task.apply(index), executor));
+                scheduled.add(index);
+            }
+
+            // wait for all tasks to finish, even if one fails
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .exceptionally(ex -> null)
+                    .join();
+            List<T> result = new ArrayList<>(dependencies.size());
+            for (CompletableFuture<T> future : futures) {
+                result.add(future.join());
+            }
+            return result;
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @param componentClasses Component classes
+     * @return Indexes of the components each component has a reference to
+     */
+    static @NotNull List<Set<Integer>> getDependencies(@NotNull List<Class<?>> componentClasses) {
+        List<Set<String>> serviceInterfaces = new ArrayList<>(componentClasses.size());
+        List<Set<String>> referenceInterfaces = new ArrayList<>(componentClasses.size());
+        for (Class<?> componentClass : componentClasses) {
+            OsgiMetadata metadata = OsgiMetadataUtil.getMetadata(componentClass);
+            serviceInterfaces.add(metadata != null ? metadata.getServiceInterfaces() : Collections.emptySet());
+            referenceInterfaces.add(getReferenceInterfaces(componentClass));
+        }
+        return getDependencies(serviceInterfaces, referenceInterfaces);
+    }
+
+    /**
+     * @param serviceInterfaces Service interfaces provided by each component
+     * @param referenceInterfaces Interfaces referenced by each component
+     * @return Indexes of the components each component has a reference to
+     */
+    static @NotNull List<Set<Integer>> getDependencies(
+            @NotNull List<Set<String>> serviceInterfaces, @NotNull List<Set<String>> referenceInterfaces) {
+        List<Set<Integer>> dependencies = new ArrayList<>(serviceInterfaces.size());
+        for (int i = 0; i < serviceInterfaces.size(); i++) {
+            Set<Integer> componentDependencies = new LinkedHashSet<>();
+            for (int j = 0; j < serviceInterfaces.size(); j++) {
+                if (i != j && !Collections.disjoint(referenceInterfaces.get(i), serviceInterfaces.get(j))) {
+                    componentDependencies.add(j);
+                }
+            }
+            dependencies.add(componentDependencies);
+        }
+        return dependencies;
+    }
+
+    /**
+     * @param componentClass Component class
+     * @return Interfaces of all references of the component
+     */
+    static @NotNull Set<String> getReferenceInterfaces(@NotNull Class<?> componentClass) {
+        OsgiMetadata metadata = OsgiMetadataUtil.getMetadata(componentClass);
+        if (metadata == null) {
+            return Collections.emptySet();
+        }
+        Set<String> referenceInterfaces = new HashSet<>();
+        for (Reference reference : metadata.getReferences()) {
+            referenceInterfaces.add(reference.getInterfaceType());
+        }
+        return referenceInterfaces;
+    }
+
+    /**
+     * Sorts the components topologically with Kahn's algorithm. Of the components without pending dependencies
+     * the one given first is taken, if there are none the references form a cycle, which is broken by taking
+     * the first remaining component.
+     * @param dependencies Indexes of the components each component has a reference to
+     * @return Component indexes in activation order
+     */
+    static @NotNull List<Integer> getActivationOrder(@NotNull List<Set<Integer>> dependencies) {
+        int size = dependencies.size();
+        int[] pendingDependencies = new int[size];
+        List<List<Integer>> dependents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            for (int dependency : dependencies.get(i)) {
+                pendingDependencies[i]++;
+                dependents.get(dependency).add(i);
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < size; i++) {
+            if (pendingDependencies[i] == 0) {
+                ready.add(i);
+            }
+        }
+        boolean[] done = new boolean[size];
+        int firstRemaining = 0;
+        List<Integer> order = new ArrayList<>(size);
+        while (order.size() < size) {
+            Integer next = ready.poll();
+            if (next == null) {
+                // cycle: take the first remaining component
+                while (done[firstRemaining]) {
+                    firstRemaining++;
+                }
+                next = firstRemaining;
+            }
+            done[next] = true;
+            order.add(next);
+            for (int dependent : dependents.get(next)) {
+                if (--pendingDependencies[dependent] == 0 && !done[dependent]) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return order;
+    }
+}
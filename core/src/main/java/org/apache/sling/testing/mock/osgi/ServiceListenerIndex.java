@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Index of service listeners by the <code>objectClass</code> values their filters require.
+ * <p>
+ * Most listeners are registered with a filter like <code>(objectClass=my.Service)</code>, possibly combined
+ * with further conditions. Such listeners are only candidates for service events of services registered with
+ * one of the required classes. Listeners without filter or with filters that do not restrict the
+ * <code>objectClass</code> by equality are candidates for all service events.
+ * </p>
+ * <p>
+ * The full filter is still evaluated for each candidate, so the result is the same as evaluating the filters
+ * of all listeners. Adding and removing listeners is synchronized, looking up the matching listeners is not.
+ * </p>
+ */
+final class ServiceListenerIndex {
+
+    private final Map<ServiceListener, Set<String>> objectClassesByListener = new ConcurrentHashMap<>();
+    private final Map<String, Map<ServiceListener, Filter>> listenersByObjectClass = new ConcurrentHashMap<>();
+    private final Map<ServiceListener, Filter> unindexedListeners = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the listener, or replaces the filter if the listener was already added.
+     * @param listener Service listener
+     * @param filter Parsed filter
+     * @param filterString Filter string, null if the listener is interested in all services
+     */
+    synchronized void add(@NotNull ServiceListener listener, @NotNull Filter filter, @Nullable String filterString) {
+        remove(listener);
+        Set<String> objectClasses = getObjectClasses(filterString);
+        if (objectClasses == null) {
+            unindexedListeners.put(listener, filter);
+            objectClassesByListener.put(listener, Collections.emptySet());
+        } else {
+            for (String objectClass : objectClasses) {
+                listenersByObjectClass
+                        .computeIfAbsent(objectClass, key -> new ConcurrentHashMap<>())
+                        .put(listener, filter);
+            }
+            objectClassesByListener.put(listener, objectClasses);
+        }
+    }
+
+    /**
+     * @param listener Service listener
+     */
+    synchronized void remove(@NotNull ServiceListener listener) {
+        Set<String> objectClasses = objectClassesByListener.remove(listener);
+        if (objectClasses == null) {
+            return;
+        }
+        unindexedListeners.remove(listener);
+        for (String objectClass : objectClasses) {
+            Map<ServiceListener, Filter> listeners = listenersByObjectClass.get(objectClass);
+            if (listeners != null) {
+                listeners.remove(listener);
+                if (listeners.isEmpty()) {
+                    listenersByObjectClass.remove(objectClass);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param serviceReference Service reference
+     * @return Listeners whose filter matches the given service reference
+     */
+    @NotNull
+    List<ServiceListener> getMatchingListeners(@NotNull ServiceReference<?> serviceReference) {
+        List<ServiceListener> result = new ArrayList<>();
+        addMatchingListeners(result, unindexedListeners, serviceReference, null);
+        Object objectClassValue = serviceReference.getProperty(Constants.OBJECTCLASS);
+        if (objectClassValue instanceof String[]) {
+            String[] objectClasses = (String[]) objectClassValue;
+            // a listener may be indexed for multiple object classes of the same service
+            Set<ServiceListener> added = objectClasses.length > 1 ? newIdentitySet(result) : null;
+            for (String objectClass : objectClasses) {
+                Map<ServiceListener, Filter> listeners = listenersByObjectClass.get(objectClass);
+                if (listeners != null) {
+                    addMatchingListeners(result, listeners, serviceReference, added);
+                }
+            }
+        } else {
+            // unexpected service properties - check all indexed listeners
+            Set<ServiceListener> added = newIdentitySet(result);
+            for (Map<ServiceListener, Filter> listeners : listenersByObjectClass.values()) {
+                addMatchingListeners(result, listeners, serviceReference, added);
+            }
+        }
+        return result;
+    }
+
+    private static void addMatchingListeners(
+            List<ServiceListener> result,
+            Map<ServiceListener, Filter> listeners,
+            ServiceReference<?> serviceReference,
+            Set<ServiceListener> added) {
+        for (Map.Entry<ServiceListener, Filter> entry : listeners.entrySet()) {
+            if ((added == null || !added.contains(entry.getKey())) && entry.getValue().match(serviceReference)) {
+                result.add(entry.getKey());
+                if (added != null) {
+                    added.add(entry.getKey());
+                }
+            }
+        }
+    }
+
+    private static Set<ServiceListener> newIdentitySet(List<ServiceListener> listeners) {
+        Set<ServiceListener> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        result.addAll(listeners);
+        return result;
+    }
+
+    /**
+     * @param filterString Filter string
+     * @return Object classes of which a service must be registered with at least one to match the filter,
+     *         or null if the filter does not restrict the object classes
+     */
+    static @Nullable Set<String> getObjectClasses(@Nullable String filterString) {
+        if (filterString == null) {
+            return null;
+        }
+        try {
+            return getObjectClasses(SimpleFilter.parse(filterString));
+        } catch (RuntimeException ex) {
+            // the filter string was already validated when creating the filter, check all events to be safe
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> getObjectClasses(SimpleFilter filter) {
+        switch (filter.getOperation()) {
+            case SimpleFilter.EQ:
+                if (Constants.OBJECTCLASS.equalsIgnoreCase(filter.getName()) && filter.getValue() instanceof String) {
+                    return Collections.singleton((String) filter.getValue());
+                }
+                return null;
+            case SimpleFilter.AND:
+                // all conditions have to match, so any restricted condition is sufficient
+                for (SimpleFilter child : (List<SimpleFilter>) filter.getValue()) {
+                    Set<String> objectClasses = getObjectClasses(child);
+                    if (objectClasses != null) {
+                        return objectClasses;
+                    }
+                }
+                return null;
+            case SimpleFilter.OR:
+                // one condition has to match, so all conditions have to be restricted
+                Set<String> result = new HashSet<>();
+                for (SimpleFilter child : (List<SimpleFilter>) filter.getValue()) {
+                    Set<String> objectClasses = getObjectClasses(child);
+                    if (objectClasses == null) {
+                        return null;
+                    }
+                    result.addAll(objectClasses);
+                }
+                return result;
+            default:
+                return null;
+        }
+    }
+}
@@ -19,9 +19,15 @@
 package org.apache.sling.testing.mock.osgi.context;
 
 import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.Dictionary;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.sling.testing.mock.osgi.EventAdminMetrics;
 import org.apache.sling.testing.mock.osgi.MapUtil;
 import org.apache.sling.testing.mock.osgi.MockEventAdmin;
 import org.apache.sling.testing.mock.osgi.MockOsgi;
@@ -32,6 +38,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.EventAdmin;
 
 /**
  * Defines OSGi context objects and helper methods.
@@ -42,6 +49,8 @@ public class OsgiContextImpl {
 
     protected ComponentContext componentContext;
 
+    private final Deque<ComponentContext> forkParents = new ArrayDeque<>();
+
     /**
      * Setup actions before test method execution
      */
@@ -53,6 +62,9 @@ public class OsgiContextImpl {
      * Teardown actions after test method execution
      */
     protected void tearDown() {
+        while (!forkParents.isEmpty()) {
+            discardFork();
+        }
         if (componentContext != null) {
             // deactivate all services
             MockOsgi.shutdown(componentContext.getBundleContext());
@@ -61,6 +73,56 @@ public class OsgiContextImpl {
         this.componentContext = null;
     }
 
+    /**
+     * Forks the OSGi environment of this context: A child bundle context inherits all services and configurations
+     * registered so far, and is used by this context until {@link #discardFork()} is called. Changes to services
+     * and configurations in the child do not affect the parent, components of the parent affected by such changes
+     * are re-created in the child. This allows to share an expensive setup between multiple tests, paying only for
+     * the changes of each test. Forks may be nested.
+     */
+    public final void fork() {
+        ComponentContext parent = componentContext();
+        BundleContext child = MockOsgi.fork(parent.getBundleContext());
+        forkParents.push(parent);
+        this.componentContext = MockOsgi.newComponentContext(child, parent.getProperties());
+    }
+
+    /**
+     * Discards the bundle context created by the last call of {@link #fork()}: Components created in the child
+     * are deactivated, and this context returns to the parent bundle context.
+     * @throws IllegalStateException If this context is not forked
+     */
+    public final void discardFork() {
+        if (forkParents.isEmpty()) {
+            throw new IllegalStateException("Context is not forked.");
+        }
+        try {
+            MockOsgi.shutdown(componentContext().getBundleContext());
+        } finally {
+            this.componentContext = forkParents.pop();
+        }
+    }
+
+    /**
+     * @return true if this context currently uses a bundle context created by {@link #fork()}
+     */
+    public final boolean isForked() {
+        return !forkParents.isEmpty();
+    }
+
+    /**
+     * Enables or disables the parallel shutdown of this context on teardown, see
+     * {@link MockOsgi#setShutdownParallel(BundleContext, boolean)}. Applies to the current bundle context and,
+     * if this context is forked, to all its parents.
+     * @param parallel Whether to shut down in parallel
+     */
+    public final void setShutdownParallel(boolean parallel) {
+        MockOsgi.setShutdownParallel(componentContext().getBundleContext(), parallel);
+        for (ComponentContext parent : forkParents) {
+            MockOsgi.setShutdownParallel(parent.getBundleContext(), parallel);
+        }
+    }
+
     /**
      * Default services that should be available for every unit test
      */
@@ -213,6 +275,32 @@ public class OsgiContextImpl {
         return registerInjectActivateService(componentClass, MapUtil.toMap(properties));
     }
 
+    /**
+     * Registers services as a batch. Components with STATIC+GREEDY references to services registered
+     * or unregistered in the batch are restarted only once after the batch, instead of once per registration.
+     * <pre>
+     * context.runBatch(() -&gt; {
+     *     context.registerService(MyService.class, service1);
+     *     context.registerInjectActivateService(MyComponent.class);
+     * });
+     * </pre>
+     * @param registrations Registers or unregisters services in this context
+     */
+    public final void runBatch(@NotNull Runnable registrations) {
+        MockOsgi.runBatch(bundleContext(), registrations);
+    }
+
+    /**
+     * Injects dependencies, activates and registers a set of DS components in the mocked OSGi environment.
+     * Components are activated in the order of their references to each other, independent components are
+     * activated in parallel.
+     * @param components DS component classes, which are instantiated, or DS component instances
+     * @return the DS component instances, in the order of the given components
+     */
+    public final @NotNull List<Object> registerInjectActivateServices(@NotNull final Collection<?> components) {
+        return MockOsgi.registerInjectActivateServices(bundleContext(), components);
+    }
+
     /**
      * Lookup a single service
      * @param <ServiceType> Service type
@@ -255,4 +343,42 @@ public class OsgiContextImpl {
             throw new RuntimeException("Invalid filter syntax: " + filter, ex);
         }
     }
+
+    /**
+     * Waits until all events posted asynchronously via the {@link MockEventAdmin} services of this context
+     * are delivered to the event handlers.
+     * @param timeout Maximum time to wait
+     * @param unit Time unit of the timeout
+     * @return true if all posted events are delivered, false if the timeout elapsed before
+     * @throws RuntimeException If the current thread was interrupted while waiting
+     */
+    public final boolean drainEvents(long timeout, @NotNull TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            for (EventAdmin eventAdmin : getServices(EventAdmin.class, null)) {
+                if (eventAdmin instanceof MockEventAdmin) {
+                    long remaining = deadline - System.nanoTime();
+                    if (!((MockEventAdmin) eventAdmin).drain(remaining, TimeUnit.NANOSECONDS)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for posted events.", ex);
+        }
+    }
+
+    /**
+     * @return Snapshot of the event delivery metrics of the {@link MockEventAdmin} registered in this context,
+     *         or null if no mock event admin is registered
+     */
+    public final @Nullable EventAdminMetrics getEventAdminMetrics() {
+        EventAdmin eventAdmin = getService(EventAdmin.class);
+        if (eventAdmin instanceof MockEventAdmin) {
+            return ((MockEventAdmin) eventAdmin).getMetrics();
+        }
+        return null;
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ComponentDescriptorCacheFileTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRead() throws IOException {
+        File file = new File(tempFolder.getRoot(), "sub/metadata.cache");
+        ComponentDescriptorCacheFile underTest = new ComponentDescriptorCacheFile(file.toPath());
+        assertNull(underTest.read("key1"));
+
+        ComponentDescriptor descriptor = new ComponentDescriptor(
+                "org.example.Comp1",
+                "comp1",
+                null,
+                Set.of("org.example.Service1"),
+                Map.of(
+                        "prop1", "value1",
+                        "prop2", 5,
+                        "prop3", 10L,
+                        "prop4", true,
+                        "prop5", new String[] {"v1", "v2"}),
+                List.of(Map.of("name", "ref1", "interface", "org.example.Service2")),
+                "activate",
+                null,
+                "modified");
+        underTest.write("key1", Map.of(descriptor.getImplementationClass(), descriptor));
+
+        Map<String, ComponentDescriptor> result = underTest.read("key1");
+        assertNotNull(result);
+        ComponentDescriptor copy = result.get("org.example.Comp1");
+        assertEquals("comp1", copy.getName());
+        assertNull(copy.getConfigurationPid());
+        assertEquals(Set.of("org.example.Service1"), copy.getServiceInterfaces());
+        assertEquals("value1", copy.getProperties().get("prop1"));
+        assertEquals(5, copy.getProperties().get("prop2"));
+        assertEquals(10L, copy.getProperties().get("prop3"));
+        assertEquals(true, copy.getProperties().get("prop4"));
+        assertArrayEquals(new String[] {"v1", "v2"}, (String[]) copy.getProperties().get("prop5"));
+        assertEquals(descriptor.getReferences(), copy.getReferences());
+        assertEquals("activate", copy.getActivateMethodName());
+        assertNull(copy.getDeactivateMethodName());
+        assertEquals("modified", copy.getModifiedMethodName());
+
+        // key mismatch
+        assertNull(underTest.read("key2"));
+    }
+
+    @Test
+    public void testReadInvalidFile() throws IOException {
+        File file = tempFolder.newFile("metadata.cache");
+        Files.write(file.toPath(), new byte[] {1, 2, 3});
+        assertNull(new ComponentDescriptorCacheFile(file.toPath()).read("key1"));
+    }
+
+    @Test
+    public void testBuildClasspathKey() {
+        String key = ComponentDescriptorCacheFile.buildClasspathKey(OsgiMetadataUtil.METADATA_PATH);
+        assertNotNull(key);
+        assertEquals(key, ComponentDescriptorCacheFile.buildClasspathKey(OsgiMetadataUtil.METADATA_PATH));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ComponentDescriptorParserTest {
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<components xmlns:scr=\"http://www.osgi.org/xmlns/scr/v1.1.0\">\n"
+            + "  <scr:component name=\"comp1\" activate=\"start\" configuration-pid=\"pid1 pid2\">\n"
+            + "    <implementation class=\"org.example.Comp1\"/>\n"
+            + "    <service>\n"
+            + "      <provide interface=\"org.example.Service1\"/>\n"
+            + "      <provide interface=\"org.example.Service2\"/>\n"
+            + "    </service>\n"
+            + "    <property name=\"prop1\" value=\"value1\"/>\n"
+            + "    <property name=\"prop2\" type=\"Integer\" value=\"5\"/>\n"
+            + "    <property name=\"prop3\" value=\"ignored\">\n"
+            + "      value3a\n"
+            + "      value3b\n"
+            + "    </property>\n"
+            + "    <reference name=\"ref1\" interface=\"org.example.Service3\" cardinality=\"0..1\"/>\n"
+            + "  </scr:component>\n"
+            + "  <scr:component name=\"comp2\">\n"
+            + "    <implementation class=\"org.example.Comp2\"/>\n"
+            + "  </scr:component>\n"
+            + "  <scr:component name=\"noImplementation\"/>\n"
+            + "</components>";
+
+    @Test
+    public void testParse() {
+        List<ComponentDescriptor> descriptors = parse(XML);
+        assertEquals(2, descriptors.size());
+
+        ComponentDescriptor comp1 = descriptors.get(0);
+        assertEquals("org.example.Comp1", comp1.getImplementationClass());
+        assertEquals("comp1", comp1.getName());
+        assertEquals("pid1 pid2", comp1.getConfigurationPid());
+        assertEquals("start", comp1.getActivateMethodName());
+        assertNull(comp1.getDeactivateMethodName());
+        assertEquals(Set.of("org.example.Service1", "org.example.Service2"), comp1.getServiceInterfaces());
+
+        Map<String, Object> props = comp1.getProperties();
+        assertEquals("value1", props.get("prop1"));
+        assertEquals(5, props.get("prop2"));
+        assertArrayEquals(new String[] {"value3a", "value3b"}, (String[]) props.get("prop3"));
+
+        assertEquals(1, comp1.getReferences().size());
+        assertEquals("ref1", comp1.getReferences().get(0).get("name"));
+        assertEquals("0..1", comp1.getReferences().get(0).get("cardinality"));
+
+        ComponentDescriptor comp2 = descriptors.get(1);
+        assertEquals("org.example.Comp2", comp2.getImplementationClass());
+        assertTrue(comp2.getServiceInterfaces().isEmpty());
+        assertTrue(comp2.getReferences().isEmpty());
+    }
+
+    @Test
+    public void testProvideOutsideServiceIgnored() {
+        List<ComponentDescriptor> descriptors = parse("<components><component>"
+                + "<implementation class=\"org.example.Comp1\"/>"
+                + "<provide interface=\"org.example.Ignored\"/>"
+                + "<service><provide interface=\"org.example.Service1\"/><provide interface=\"\"/></service>"
+                + "</component></components>");
+        assertEquals(1, descriptors.size());
+        assertEquals(Set.of("org.example.Service1"), descriptors.get(0).getServiceInterfaces());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testParseInvalidXml() {
+        parse("<components><component>");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testParseDoctypeNotSupported() {
+        parse("<?xml version=\"1.0\"?><!DOCTYPE foo [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+                + "<components><component><implementation class=\"&xxe;\"/></component></components>");
+    }
+
+    private static List<ComponentDescriptor> parse(String xml) {
+        InputStream is = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+        return ComponentDescriptorParser.parse(is, "test.xml");
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.OsgiMetadata;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ComponentDescriptorTest {
+
+    @Test
+    public void testImmutable() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("prop1", "value1");
+        ComponentDescriptor descriptor = new ComponentDescriptor(
+                "org.example.Comp1",
+                "comp1",
+                null,
+                Set.of("org.example.Service1"),
+                properties,
+                List.of(Map.of("name", "ref1")),
+                "activate",
+                null,
+                null);
+
+        assertUnsupported(() -> descriptor.getServiceInterfaces().add("org.example.Service2"));
+        assertUnsupported(() -> descriptor.getProperties().put("prop2", "value2"));
+        assertUnsupported(() -> descriptor.getReferences().clear());
+        assertEquals(Map.of("prop1", "value1"), descriptor.getProperties());
+    }
+
+    @Test
+    public void testMetadataModifiable() {
+        OsgiMetadata metadata = OsgiMetadataUtil.getMetadata(OsgiMetadataUtilTest.ServiceWithMetadata.class);
+
+        // metadata built from the shared descriptor exposes modifiable copies, as before descriptors were introduced
+        Map<String, Object> props = metadata.getProperties();
+        props.put("test.prop", "value");
+        assertTrue(props.containsKey("test.prop"));
+        props.remove("test.prop");
+        assertFalse(props.containsKey("test.prop"));
+
+        ComponentDescriptor descriptor = OsgiMetadataUtil.scanMetadataDescriptors(false)
+                .get(OsgiMetadataUtilTest.ServiceWithMetadata.class.getName());
+        assertEquals(descriptor.getProperties().keySet(), props.keySet());
+    }
+
+    private static void assertUnsupported(Runnable modification) {
+        try {
+            modification.run();
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+}
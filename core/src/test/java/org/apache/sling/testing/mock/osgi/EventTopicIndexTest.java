@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class EventTopicIndexTest {
+
+    private static final Map<String, String[]> TOPICS = Map.of(
+            "exact", new String[] {"sample/topic1"},
+            "multiple", new String[] {"sample/topic1", "sample/topic2"},
+            "sampleAll", new String[] {"sample/*"},
+            "all", new String[0],
+            "wildcardAll", new String[] {"*"},
+            "nested", new String[] {"sample/topic1/*"},
+            "pattern", new String[] {"sam*/topic2"});
+
+    private final EventTopicIndex<String> underTest = new EventTopicIndex<>(
+            List.of("exact", "multiple", "sampleAll", "all", "wildcardAll", "nested", "pattern"), TOPICS::get);
+
+    @Test
+    public void testResolve() {
+        assertEquals(
+                List.of("exact", "multiple", "sampleAll", "all", "wildcardAll"), underTest.resolve("sample/topic1"));
+        assertEquals(
+                List.of("multiple", "sampleAll", "all", "wildcardAll", "pattern"), underTest.resolve("sample/topic2"));
+        assertEquals(List.of("sampleAll", "all", "wildcardAll", "nested"), underTest.resolve("sample/topic1/sub"));
+        assertEquals(List.of("all", "wildcardAll"), underTest.resolve("sample"));
+        assertEquals(List.of("all", "wildcardAll"), underTest.resolve("other/topic3"));
+        assertEquals(List.of("all"), underTest.resolve(null));
+    }
+
+    @Test
+    public void testResolveCached() {
+        assertSame(underTest.resolve("sample/topic1"), underTest.resolve("sample/topic1"));
+    }
+
+    @Test
+    public void testResolveMaxCachedTopics() {
+        for (int i = 0; i < EventTopicIndex.MAX_CACHED_TOPICS + 10; i++) {
+            assertEquals(List.of("sampleAll", "all", "wildcardAll"), underTest.resolve("sample/topic" + (i + 3)));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FieldInvokerTest {
+
+    @Test
+    public void testGetSetPrivateField() throws Exception {
+        Target target = new Target();
+        FieldInvoker underTest = new FieldInvoker(Target.class.getDeclaredField("service"));
+        assertEquals(Object.class, underTest.getType());
+        assertNull(underTest.get(target));
+
+        underTest.set(target, "value1");
+        assertEquals("value1", underTest.get(target));
+        assertEquals("value1", target.service);
+    }
+
+    @Test
+    public void testSetFinalField() throws Exception {
+        Target target = new Target();
+        FieldInvoker underTest = new FieldInvoker(Target.class.getDeclaredField("finalService"));
+        underTest.set(target, "value1");
+        assertEquals("value1", underTest.get(target));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSetInvalidType() throws Exception {
+        FieldInvoker underTest = new FieldInvoker(Target.class.getDeclaredField("count"));
+        underTest.set(new Target(), "value1");
+    }
+
+    @SuppressWarnings("unused")
+    private static class Target {
+        private Object service;
+        private final Object finalService = null;
+        private Integer count;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FilterCacheTest {
+
+    @Test
+    public void testGetFilter() throws InvalidSyntaxException {
+        String filterString = "(prop1=" + UUID.randomUUID() + ")";
+        assertFalse(FilterCache.contains(filterString));
+        long hitCount = FilterCache.getHitCount();
+        long missCount = FilterCache.getMissCount();
+
+        Filter filter1 = FilterCache.getFilter(filterString);
+        assertTrue(FilterCache.contains(filterString));
+        assertTrue(FilterCache.getMissCount() > missCount);
+
+        Filter filter2 = FilterCache.getFilter(filterString);
+        assertSame(filter1, filter2);
+        assertTrue(FilterCache.getHitCount() > hitCount);
+    }
+
+    @Test
+    public void testFilterMatches() throws InvalidSyntaxException {
+        Filter filter = FilterCache.getFilter("(&(prop1=value1)(prop2>=5))");
+        assertTrue(filter.matches(Map.<String, Object>of("prop1", "value1", "prop2", 10)));
+        assertFalse(filter.matches(Map.<String, Object>of("prop1", "value1", "prop2", 2)));
+    }
+
+    @Test
+    public void testMaxSize() throws InvalidSyntaxException {
+        for (int i = 0; i < FilterCache.MAX_SIZE + 10; i++) {
+            FilterCache.getFilter("(prop" + i + "=value)");
+        }
+        assertTrue(FilterCache.size() <= FilterCache.MAX_SIZE);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws InvalidSyntaxException {
+        String filter1 = "(prop1=" + UUID.randomUUID() + ")";
+        String filter2 = "(prop2=" + UUID.randomUUID() + ")";
+        FilterCache.getFilter(filter1);
+        FilterCache.getFilter(filter2);
+
+        for (int i = 0; i < FilterCache.MAX_SIZE; i++) {
+            FilterCache.getFilter("(prop" + i + "=" + UUID.randomUUID() + ")");
+            if (i % 100 == 0) {
+                // keep filter1 recently used
+                FilterCache.getFilter(filter1);
+            }
+        }
+        assertTrue(FilterCache.contains(filter1));
+        assertFalse(FilterCache.contains(filter2));
+        assertTrue(FilterCache.size() <= FilterCache.MAX_SIZE);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < FilterCache.MAX_SIZE; i++) {
+                        String filter = "(prop" + i + "=" + UUID.randomUUID() + ")";
+                        assertNotNull(FilterCache.getFilter(filter));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // a single lookup afterwards evicts any filters added beyond the limit
+        FilterCache.getFilter("(prop=" + UUID.randomUUID() + ")");
+        assertTrue(FilterCache.size() <= FilterCache.MAX_SIZE);
+    }
+
+    @Test(expected = InvalidSyntaxException.class)
+    public void testInvalidFilter() throws InvalidSyntaxException {
+        FilterCache.getFilter("(prop1=value1");
+    }
+}
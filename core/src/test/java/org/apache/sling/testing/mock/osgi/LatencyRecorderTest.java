@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789L, Long.MAX_VALUE}) {
+            int index = LatencyRecorder.bucketIndex(value);
+            assertTrue(index < LatencyRecorder.BUCKET_COUNT);
+            assertTrue(value <= LatencyRecorder.bucketUpperBound(index));
+            assertTrue(index == 0 || value > LatencyRecorder.bucketUpperBound(index - 1));
+        }
+    }
+
+    @Test
+    public void testSnapshot() {
+        LatencyRecorder underTest = new LatencyRecorder();
+        for (int i = 1; i <= 1000; i++) {
+            underTest.record(i * 1000L);
+        }
+
+        LatencyHistogram histogram = underTest.snapshot();
+        assertEquals(1000, histogram.getCount());
+        assertEquals(Duration.ofMillis(1), histogram.getMax());
+        assertEquals(Duration.ofNanos(500500), histogram.getMean());
+        assertWithinRelativeError(500000, histogram.getPercentile(50));
+        assertWithinRelativeError(990000, histogram.getPercentile(99));
+        assertEquals(Duration.ofMillis(1), histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testRecordMultipleSamples() {
+        LatencyRecorder underTest = new LatencyRecorder();
+        underTest.record(100000, 100);
+        underTest.record(5000, 0);
+
+        LatencyHistogram histogram = underTest.snapshot();
+        assertEquals(100, histogram.getCount());
+        assertEquals(Duration.ofNanos(1000), histogram.getMax());
+        assertEquals(Duration.ofNanos(1000), histogram.getMean());
+        assertWithinRelativeError(1000, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void testReset() {
+        LatencyRecorder underTest = new LatencyRecorder();
+        underTest.record(1000);
+        underTest.reset();
+
+        LatencyHistogram histogram = underTest.snapshot();
+        assertEquals(0, histogram.getCount());
+        assertEquals(Duration.ZERO, histogram.getPercentile(99));
+    }
+
+    private static void assertWithinRelativeError(long expectedNanos, Duration actual) {
+        double error = Math.abs(actual.toNanos() - expectedNanos) / (double) expectedNanos;
+        assertTrue("Expected " + expectedNanos + "ns but got " + actual, error < 0.07);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LazyComponentDescriptorResolverTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final LazyComponentDescriptorResolver underTest = new LazyComponentDescriptorResolver(List.of(), false);
+    private final LazyComponentDescriptorResolver underTestClasspathScan =
+            new LazyComponentDescriptorResolver(List.of(), true);
+
+    @Test
+    public void testDocumentNamedAfterClass() {
+        ComponentDescriptor descriptor = underTest.get(Service3.class.getName());
+        assertNotNull(descriptor);
+        assertEquals(5, descriptor.getReferences().size());
+        assertEquals("activate", descriptor.getActivateMethodName());
+    }
+
+    @Test
+    public void testDocumentNotNamedAfterClass() {
+        ComponentDescriptor descriptor =
+                underTestClasspathScan.get(OsgiMetadataUtilTest.ServiceWithMetadata.class.getName());
+        assertNotNull(descriptor);
+        assertEquals(Set.of("java.lang.Comparable"), descriptor.getServiceInterfaces());
+        assertEquals(5000, descriptor.getProperties().get("service.ranking"));
+    }
+
+    @Test
+    public void testDocumentNotNamedAfterClassWithoutClasspathScan() {
+        // the document is not declared in a manifest of the classpath entry
+        assertNull(underTest.get(OsgiMetadataUtilTest.ServiceWithMetadata.class.getName()));
+    }
+
+    @Test
+    public void testDocumentNamedAfterOtherClass() {
+        ComponentDescriptor descriptor = underTestClasspathScan.get(ServiceImpl.class.getName());
+        assertNotNull(descriptor);
+        assertEquals(Set.of(Service.class.getName()), descriptor.getServiceInterfaces());
+    }
+
+    @Test
+    public void testDocumentNamedAfterOtherClassAfterClasspathScan() {
+        assertNull(underTestClasspathScan.get(OsgiMetadataUtilTest.ServiceWithoutMetadata.class.getName()));
+        assertNotNull(underTestClasspathScan.get(ServiceImpl.class.getName()));
+    }
+
+    @Test
+    public void testNoDocument() {
+        assertNull(underTest.get(OsgiMetadataUtilTest.ServiceWithoutMetadata.class.getName()));
+        // second lookup is served from the remembered negative result
+        assertNull(underTest.get(OsgiMetadataUtilTest.ServiceWithoutMetadata.class.getName()));
+        assertNotNull(underTest.get(Service3.class.getName()));
+    }
+
+    @Test
+    public void testNoDocumentParsesNoOtherDocuments() {
+        assertNull(underTest.get(OsgiMetadataUtilTest.ServiceWithoutMetadata.class.getName()));
+        assertEquals(0, underTest.getParsedDescriptorCount());
+    }
+
+    @Test
+    public void testDocumentNamedAfterOtherClassParsesOnlyThisDocument() {
+        assertNotNull(underTestClasspathScan.get(ServiceImpl.class.getName()));
+        assertEquals(1, underTestClasspathScan.getParsedDescriptorCount());
+    }
+
+    @Test
+    public void testDeclaredPath() {
+        LazyComponentDescriptorResolver resolver = new LazyComponentDescriptorResolver(
+                List.of("/OSGI-INF/" + Service3.class.getName() + ".xml"), false);
+        assertNotNull(resolver.get(Service3.class.getName()));
+    }
+
+    @Test
+    public void testDocumentDeclaredInClasspathEntry() throws IOException {
+        Path classpathEntry = tempFolder.newFolder().toPath();
+        write(
+                classpathEntry,
+                "META-INF/MANIFEST.MF",
+                "Manifest-Version: 1.0\nService-Component: OSGI-INF/components.xml\n");
+        write(
+                classpathEntry,
+                "OSGI-INF/components.xml",
+                "<components><component name=\"declared\">"
+                        + "<implementation class=\"test.lazy.DeclaredComponent\"/></component></components>");
+        write(classpathEntry, "test/lazy/DeclaredComponent.class", "");
+        write(classpathEntry, "test/lazy/OtherClass.class", "");
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {classpathEntry.toUri().toURL()}, null)) {
+            LazyComponentDescriptorResolver resolver =
+                    new LazyComponentDescriptorResolver(List.of(), false, classLoader);
+            ComponentDescriptor descriptor = resolver.get("test.lazy.DeclaredComponent");
+            assertNotNull(descriptor);
+            assertEquals("declared", descriptor.getName());
+            assertNull(resolver.get("test.lazy.OtherClass"));
+            assertEquals(1, resolver.getParsedDescriptorCount());
+        }
+    }
+
+    @Test
+    public void testDuplicateDescriptorNamedAfterClassWins() {
+        ComponentDescriptor descriptor = underTestClasspathScan.get(DuplicateServiceImpl.class.getName());
+        assertNotNull(descriptor);
+        assertEquals("named", descriptor.getName());
+    }
+
+    @Test
+    public void testDuplicateDescriptorLastPathWins() {
+        ComponentDescriptor descriptor = underTestClasspathScan.get(DuplicateService2Impl.class.getName());
+        assertNotNull(descriptor);
+        assertEquals("second", descriptor.getName());
+    }
+
+    private static void write(Path root, String path, String content) throws IOException {
+        File file = root.resolve(path).toFile();
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public interface Service {}
+
+    public static class DuplicateServiceImpl {}
+
+    public static class DuplicateService2Impl {}
+
+    public static class ServiceImpl implements Service {}
+}
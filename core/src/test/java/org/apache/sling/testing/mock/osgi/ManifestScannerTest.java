@@ -18,11 +18,13 @@
  */
 package org.apache.sling.testing.mock.osgi;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 import org.junit.Test;
 import org.osgi.framework.Constants;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ManifestScannerTest {
@@ -39,4 +41,11 @@ public class ManifestScannerTest {
         assertTrue(includeResource.contains("META-INF/LICENSE.txt=LICENSE.txt"));
         assertTrue(includeResource.contains("META-INF/NOTICE.txt=NOTICE.txt"));
     }
+
+    @Test
+    public void testGetValuesParallel() {
+        assertEquals(
+                new ArrayList<>(ManifestScanner.getValues(Constants.BUNDLE_SYMBOLICNAME, false)),
+                new ArrayList<>(ManifestScanner.getValues(Constants.BUNDLE_SYMBOLICNAME, true)));
+    }
 }
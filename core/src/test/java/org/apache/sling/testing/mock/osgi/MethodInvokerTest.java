@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MethodInvokerTest {
+
+    @Test
+    public void testInvokePrivateMethod() throws Exception {
+        Target target = new Target();
+        MethodInvoker underTest =
+                new MethodInvoker(Target.class.getDeclaredMethod("bind", String.class, Integer.class));
+        underTest.invoke(target, new Object[] {"value", 5});
+        assertEquals("value5", target.value);
+    }
+
+    @Test
+    public void testInvokeNoArgs() throws Exception {
+        Target target = new Target();
+        MethodInvoker underTest = new MethodInvoker(Target.class.getDeclaredMethod("unbind"));
+        underTest.invoke(target, new Object[0]);
+        assertEquals("unbound", target.value);
+    }
+
+    @Test
+    public void testInvokeStaticMethod() throws Exception {
+        MethodInvoker underTest = new MethodInvoker(Target.class.getDeclaredMethod("bindStatic", String.class));
+        underTest.invoke(new Target(), new Object[] {"value"});
+        assertEquals("value", Target.staticValue);
+    }
+
+    @Test
+    public void testInvokeException() throws Exception {
+        MethodInvoker underTest = new MethodInvoker(Target.class.getDeclaredMethod("fail"));
+        try {
+            underTest.invoke(new Target(), new Object[0]);
+            fail("exception expected");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class Target {
+
+        private static String staticValue;
+
+        private String value;
+
+        private void bind(String prefix, Integer suffix) {
+            value = prefix + suffix;
+        }
+
+        private static void bindStatic(String value) {
+            staticValue = value;
+        }
+
+        private void unbind() {
+            value = "unbound";
+        }
+
+        private void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
+}
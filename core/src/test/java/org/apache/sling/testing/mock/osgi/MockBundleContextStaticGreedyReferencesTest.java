@@ -20,6 +20,7 @@ package org.apache.sling.testing.mock.osgi;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3StaticGreedy;
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3StaticGreedyImpl;
@@ -34,6 +35,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 
@@ -179,6 +181,35 @@ public class MockBundleContextStaticGreedyReferencesTest {
         assertDependencies3Filtered(dependency3a);
     }
 
+    @Test
+    public void testRunBatch() throws Exception {
+        AtomicInteger registrations = new AtomicInteger();
+        bundleContext.addServiceListener(
+                event -> {
+                    if (event.getType() == ServiceEvent.REGISTERED) {
+                        registrations.incrementAndGet();
+                    }
+                },
+                "(objectClass=" + Service3StaticGreedy.class.getName() + ")");
+
+        MockOsgi.runBatch(bundleContext, () -> {
+            bundleContext.registerService(ServiceInterface1Optional.class.getName(), dependency1aOptional, null);
+            bundleContext.registerService(ServiceInterface2.class.getName(), dependency2b, null);
+            bundleContext.registerService(ServiceInterface3.class.getName(), dependency3a, null);
+            bundleContext.registerService(ServiceInterface3.class.getName(), dependency3b, null);
+
+            // restart is deferred until the end of the batch
+            assertEquals(0, registrations.get());
+            assertDependencies3();
+        });
+
+        // service is restarted only once
+        assertEquals(1, registrations.get());
+        assertDependency1Optional(dependency1aOptional);
+        assertDependencies2(dependency2a, dependency2b);
+        assertDependencies3(dependency3a, dependency3b);
+    }
+
     private void assertDependency1(ServiceInterface1 instance) {
         Service3StaticGreedy service = getService();
         if (instance == null) {
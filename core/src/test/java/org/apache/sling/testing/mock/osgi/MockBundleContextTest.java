@@ -24,7 +24,17 @@ import java.util.Collection;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3StaticGreedy;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3StaticGreedyImpl;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface1;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface1Optional;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface2;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface3;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -43,17 +53,20 @@ import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationAdmin;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
 
 @RunWith(MockitoJUnitRunner.class)
 @SuppressWarnings("null")
@@ -379,6 +392,25 @@ public class MockBundleContextTest {
         bundleContext.ungetService(ref);
     }
 
+    @Test
+    public void testGetServiceOrderWithRankingChange() throws InvalidSyntaxException {
+        ServiceRegistration<String> reg1 = bundleContext.registerService(String.class, "service1", ranking(10));
+        bundleContext.registerService(String.class, "service2", ranking(20));
+        assertEquals("service2", bundleContext.getService(bundleContext.getServiceReference(String.class)));
+
+        // raise ranking of first service above the second one
+        reg1.setProperties(ranking(30));
+        assertEquals("service1", bundleContext.getService(bundleContext.getServiceReference(String.class)));
+        ServiceReference<?>[] refs = bundleContext.getServiceReferences(String.class.getName(), null);
+        assertEquals(2, refs.length);
+        assertEquals("service1", bundleContext.getService(refs[0]));
+        assertEquals("service2", bundleContext.getService(refs[1]));
+
+        // lookup after unregistering the highest ranked service falls back to the remaining one
+        reg1.unregister();
+        assertEquals("service2", bundleContext.getService(bundleContext.getServiceReference(String.class)));
+    }
+
     @Test
     public void testGetServicesWithNoClassOnlyFilter() throws InvalidSyntaxException {
         bundleContext.registerService(String.class, "service1", testProperty());
@@ -391,6 +423,31 @@ public class MockBundleContextTest {
         assertEquals(3, refs.length);
     }
 
+    @Test
+    public void testGetServiceReferencesIndexMatchesLinearScan() throws InvalidSyntaxException {
+        bundleContext.registerService(String.class, "service1", ranking(10));
+        bundleContext.registerService(String.class, "service2", testProperty());
+        ServiceRegistration<Long> reg3 = bundleContext.registerService(Long.class, Long.valueOf(3), ranking(20));
+        bundleContext.registerService(
+                new String[] {String.class.getName(), Long.class.getName()}, Long.valueOf(4), ranking(5));
+        ServiceRegistration<String> reg5 = bundleContext.registerService(String.class, "service5", ranking(-5));
+        bundleContext.registerService(Integer.class, Integer.valueOf(6), testProperty());
+        reg3.unregister();
+        reg5.unregister();
+
+        for (String clazz : new String[] {String.class.getName(), Long.class.getName(), Integer.class.getName()}) {
+            // lookup by class uses the object class index, lookup with filter only scans all registrations
+            assertArrayEquals(
+                    bundleContext.getServiceReferences((String) null, "(" + Constants.OBJECTCLASS + "=" + clazz + ")"),
+                    bundleContext.getServiceReferences(clazz, null));
+            assertArrayEquals(
+                    bundleContext.getServiceReferences(
+                            (String) null, "(&(" + Constants.OBJECTCLASS + "=" + clazz + ")(prop1=value1))"),
+                    bundleContext.getServiceReferences(clazz, "(prop1=value1)"));
+        }
+        assertNull(bundleContext.getServiceReferences(Double.class.getName(), null));
+    }
+
     private static Dictionary<String, Object> ranking(final Integer serviceRanking) {
         Dictionary<String, Object> props = new Hashtable<String, Object>();
         if (serviceRanking != null) {
@@ -399,6 +456,148 @@ public class MockBundleContextTest {
         return props;
     }
 
+    @Test
+    public void testDependentServicesIndex() {
+        bundleContext.registerService(ServiceInterface1.class.getName(), mock(ServiceInterface1.class), null);
+        bundleContext.registerService(ServiceInterface2.class.getName(), mock(ServiceInterface2.class), null);
+
+        Service3 dynamicConsumer = new Service3();
+        MockOsgi.injectServices(dynamicConsumer, bundleContext);
+        MockOsgi.activate(dynamicConsumer, bundleContext);
+        ServiceRegistration<?> dynamicConsumerReg =
+                bundleContext.registerService(Service3.class.getName(), dynamicConsumer, null);
+
+        Service3StaticGreedy greedyConsumer = new Service3StaticGreedyImpl();
+        MockOsgi.injectServices(greedyConsumer, bundleContext);
+        MockOsgi.activate(greedyConsumer, bundleContext);
+        bundleContext.registerService(Service3StaticGreedy.class.getName(), greedyConsumer, null);
+
+        AtomicInteger greedyRestarts = new AtomicInteger();
+        bundleContext.addServiceListener(
+                event -> {
+                    if (event.getType() == ServiceEvent.REGISTERED) {
+                        greedyRestarts.incrementAndGet();
+                    }
+                },
+                "(objectClass=" + Service3StaticGreedy.class.getName() + ")");
+
+        // dependency exporting two interfaces referenced by both consumers
+        ServiceInterface3 dependency =
+                mock(ServiceInterface3.class, withSettings().extraInterfaces(ServiceInterface1Optional.class));
+        MockServiceRegistration<?> dependencyReg = (MockServiceRegistration<?>) bundleContext.registerService(
+                new String[] {ServiceInterface3.class.getName(), ServiceInterface1Optional.class.getName()},
+                dependency,
+                null);
+
+        // dynamic consumer is bound, greedy consumer is restarted once
+        assertSame(dependency, dynamicConsumer.getReference1Optional());
+        assertEquals(List.of(dependency), dynamicConsumer.getReferences3());
+        assertEquals(1, greedyRestarts.get());
+        Service3StaticGreedy restartedGreedyConsumer = (Service3StaticGreedy)
+                bundleContext.getService(bundleContext.getServiceReference(Service3StaticGreedy.class.getName()));
+        assertNotSame(greedyConsumer, restartedGreedyConsumer);
+        assertSame(dependency, restartedGreedyConsumer.getReference1Optional());
+        assertEquals(List.of(dependency), restartedGreedyConsumer.getReferences3());
+
+        // dynamic consumer is unbound, greedy consumer is restarted once
+        dependencyReg.unregister();
+        assertNull(dynamicConsumer.getReference1Optional());
+        assertEquals(List.of(), dynamicConsumer.getReferences3());
+        assertEquals(2, greedyRestarts.get());
+        restartedGreedyConsumer = (Service3StaticGreedy)
+                bundleContext.getService(bundleContext.getServiceReference(Service3StaticGreedy.class.getName()));
+        assertNull(restartedGreedyConsumer.getReference1Optional());
+        assertEquals(List.of(), restartedGreedyConsumer.getReferences3());
+
+        // unregistered consumers are removed from the index
+        MockBundleContext mockBundleContext = (MockBundleContext) bundleContext;
+        assertEquals(2, mockBundleContext.getDependentServices(dependencyReg).size());
+        dynamicConsumerReg.unregister();
+        Set<MockServiceRegistration> dependentServices = mockBundleContext.getDependentServices(dependencyReg);
+        assertEquals(1, dependentServices.size());
+        MockServiceRegistration<?> greedyConsumerReg = dependentServices.iterator().next();
+        assertSame(restartedGreedyConsumer, greedyConsumerReg.getService());
+        greedyConsumerReg.unregister();
+        assertEquals(Set.of(), mockBundleContext.getDependentServices(dependencyReg));
+    }
+
+    @Test
+    public void testFork() throws Exception {
+        Object service1 = new Object();
+        ServiceRegistration<?> reg1 = bundleContext.registerService(String.class.getName(), service1, null);
+
+        BundleContext child = MockOsgi.fork(bundleContext);
+        assertSame(service1, child.getService(child.getServiceReference(String.class.getName())));
+
+        // changes in the child are not visible in the parent
+        Object service2 = new Object();
+        child.registerService(Integer.class.getName(), service2, null);
+        assertSame(service2, child.getService(child.getServiceReference(Integer.class.getName())));
+        assertNull(bundleContext.getServiceReference(Integer.class.getName()));
+        assertSame(reg1.getReference(), bundleContext.getServiceReference(String.class.getName()));
+
+        MockOsgi.shutdown(child);
+        assertSame(reg1.getReference(), bundleContext.getServiceReference(String.class.getName()));
+    }
+
+    @Test
+    public void testForkServiceListener() throws Exception {
+        ServiceRegistration<?> reg1 = bundleContext.registerService(String.class.getName(), new Object(), null);
+        List<String> events = new ArrayList<>();
+        bundleContext.addServiceListener(
+                event -> events.add(event.getType() + ":"
+                        + event.getServiceReference().getProperty(Constants.SERVICE_ID)),
+                "(|(objectClass=java.lang.String)(objectClass=java.lang.Integer))");
+
+        // listeners of the parent are notified about changes in the child
+        BundleContext child = MockOsgi.fork(bundleContext);
+        ServiceRegistration<?> reg2 = child.registerService(Integer.class.getName(), new Object(), null);
+        MockServiceReference<?> childRef1 =
+                (MockServiceReference<?>) child.getServiceReference(String.class.getName());
+        childRef1.getServiceRegistration().unregister();
+        Object serviceId1 = reg1.getReference().getProperty(Constants.SERVICE_ID);
+        Object serviceId2 = reg2.getReference().getProperty(Constants.SERVICE_ID);
+        assertEquals(
+                List.of(ServiceEvent.REGISTERED + ":" + serviceId2, ServiceEvent.UNREGISTERING + ":" + serviceId1),
+                events);
+        assertSame(reg1.getReference(), bundleContext.getServiceReference(String.class.getName()));
+
+        // on discarding the child the listeners see the state of the parent again
+        events.clear();
+        MockOsgi.shutdown(child);
+        assertEquals(
+                List.of(ServiceEvent.UNREGISTERING + ":" + serviceId2, ServiceEvent.REGISTERED + ":" + serviceId1),
+                events);
+    }
+
+    @Test
+    public void testForkConfigurationAdmin() throws Exception {
+        ConfigurationAdmin configAdmin = getConfigurationAdmin(bundleContext);
+        configAdmin.getConfiguration("pid1").update(MapUtil.toDictionary(Map.<String, Object>of("prop1", "value1")));
+
+        BundleContext child = MockOsgi.fork(bundleContext);
+        ConfigurationAdmin childConfigAdmin = getConfigurationAdmin(child);
+        assertNotSame(configAdmin, childConfigAdmin);
+        assertEquals("value1", childConfigAdmin.getConfiguration("pid1").getProperties().get("prop1"));
+
+        childConfigAdmin
+                .getConfiguration("pid1")
+                .update(MapUtil.toDictionary(Map.<String, Object>of("prop1", "value2")));
+        childConfigAdmin
+                .getConfiguration("pid2")
+                .update(MapUtil.toDictionary(Map.<String, Object>of("prop1", "value3")));
+        assertEquals("value2", childConfigAdmin.getConfiguration("pid1").getProperties().get("prop1"));
+        assertEquals(2, childConfigAdmin.listConfigurations("(prop1=*)").length);
+
+        assertEquals("value1", configAdmin.getConfiguration("pid1").getProperties().get("prop1"));
+        assertEquals(1, configAdmin.listConfigurations("(prop1=*)").length);
+        MockOsgi.shutdown(child);
+    }
+
+    private static ConfigurationAdmin getConfigurationAdmin(BundleContext context) {
+        return (ConfigurationAdmin) context.getService(context.getServiceReference(ConfigurationAdmin.class.getName()));
+    }
+
     private static Dictionary<String, Object> testProperty() {
         Dictionary<String, Object> props = new Hashtable<String, Object>();
         props.put("prop1", "value1");
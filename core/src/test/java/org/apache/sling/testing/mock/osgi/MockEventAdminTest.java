@@ -19,10 +19,13 @@
 package org.apache.sling.testing.mock.osgi;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
@@ -131,6 +134,194 @@ public class MockEventAdminTest {
         assertTrue(expectedResult);
     }
 
+    @Test
+    public void testSendEvent_EventFilter() {
+        DummyEventHandler eventHandlerFilter = (DummyEventHandler) context.registerService(
+                EventHandler.class,
+                new DummyEventHandler(),
+                Map.<String, Object>of(
+                        EventConstants.EVENT_TOPIC, TOPIC_SAMPLE_ALL, EventConstants.EVENT_FILTER, "(prop1=value1)"));
+        DummyEventHandler eventHandlerInvalidFilter = (DummyEventHandler) context.registerService(
+                EventHandler.class,
+                new DummyEventHandler(),
+                Map.<String, Object>of(EventConstants.EVENT_TOPIC, TOPIC_SAMPLE_ALL, EventConstants.EVENT_FILTER, "("));
+
+        Event eventWithProperty = new Event(TOPIC_SAMPLE_2, Map.<String, Object>of("prop1", "value1"));
+        EventAdmin eventAdmin = context.getService(EventAdmin.class);
+        eventAdmin.sendEvent(EVENT_SAMPLE_2);
+        eventAdmin.sendEvent(eventWithProperty);
+
+        assertEquals(List.of(eventWithProperty), eventHandlerFilter.getReceivedEvents());
+        assertEquals(List.of(), eventHandlerInvalidFilter.getReceivedEvents());
+        assertEquals(List.of(EVENT_SAMPLE_2, eventWithProperty), eventHandlerSampleAll.getReceivedEvents());
+    }
+
+    @Test(timeout = 10000)
+    public void testPostEventsOrderedWithThreadPool() throws InterruptedException {
+        MockEventAdmin eventAdmin = context.registerInjectActivateService(
+                new MockEventAdmin(), MockEventAdmin.PROPERTY_THREAD_POOL_SIZE, 4);
+        int eventCount = 10000;
+        List<OrderedEventHandler> handlers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            handlers.add((OrderedEventHandler) context.registerService(
+                    EventHandler.class,
+                    new OrderedEventHandler(eventCount),
+                    Map.<String, Object>of(EventConstants.EVENT_TOPIC, TOPIC_SAMPLE_ALL)));
+        }
+
+        for (int i = 0; i < eventCount; i++) {
+            eventAdmin.postEvent(new Event(TOPIC_SAMPLE_1, Map.<String, Object>of("index", i)));
+        }
+
+        // each handler receives the posted events in posting order
+        for (OrderedEventHandler handler : handlers) {
+            handler.await();
+            assertEquals(eventCount, handler.getReceivedIndexes().size());
+            for (int i = 0; i < eventCount; i++) {
+                assertEquals(Integer.valueOf(i), handler.getReceivedIndexes().get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testPostEventsBatched() {
+        MockEventAdmin eventAdmin = context.registerInjectActivateService(
+                new MockEventAdmin(), MockEventAdmin.PROPERTY_BATCH_SIZE, 100);
+        DummyBatchEventHandler batchEventHandler = (DummyBatchEventHandler) context.registerService(
+                EventHandler.class,
+                new DummyBatchEventHandler(),
+                Map.<String, Object>of(EventConstants.EVENT_TOPIC, TOPIC_SAMPLE_1));
+        int eventCount = 1000;
+
+        // block the first delivery until all events are posted, so the remaining events are queued up
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < eventCount; i++) {
+            Event event = new Event(TOPIC_SAMPLE_1, Map.<String, Object>of("index", i));
+            events.add(event);
+            eventAdmin.postEvent(event);
+        }
+        batchEventHandler.release();
+        assertTrue(context.drainEvents(10, TimeUnit.SECONDS));
+
+        // batch handler receives all events in batches, other handlers one by one
+        assertEquals(events, batchEventHandler.getReceivedEvents());
+        List<Integer> batchSizes = batchEventHandler.getBatchSizes();
+        assertTrue(batchSizes.stream().allMatch(size -> size > 0 && size <= 100));
+        assertTrue(batchSizes.stream().anyMatch(size -> size > 1));
+        assertEquals(List.of(), batchEventHandler.getSingleEvents());
+        // handling time of batches is recorded per event
+        assertEquals(
+                eventCount,
+                eventAdmin
+                        .getMetrics()
+                        .getHandlerMetrics(batchEventHandler)
+                        .getHandlingTime()
+                        .getCount());
+        assertEquals(events, eventHandler1.getReceivedEvents());
+    }
+
+    @Test
+    public void testMetrics() {
+        EventHandler failingEventHandler = context.registerService(
+                EventHandler.class,
+                new EventHandler() {
+                    @Override
+                    public void handleEvent(Event event) {
+                        throw new IllegalStateException("failure");
+                    }
+                },
+                Map.<String, Object>of(EventConstants.EVENT_TOPIC, TOPIC_OTHER_3));
+        EventAdmin eventAdmin = context.getService(EventAdmin.class);
+        eventAdmin.sendEvent(EVENT_SAMPLE_1);
+        eventAdmin.sendEvent(EVENT_OTHER_3);
+        eventAdmin.postEvent(EVENT_SAMPLE_2);
+        assertTrue(context.drainEvents(10, TimeUnit.SECONDS));
+
+        EventAdminMetrics metrics = context.getEventAdminMetrics();
+        assertEquals(1, metrics.getPostedEvents());
+        assertEquals(2, metrics.getSentEvents());
+        assertEquals(0, metrics.getDroppedEvents());
+        assertEquals(0, metrics.getQueueDepth());
+        assertEquals(1, metrics.getHandlerExceptions());
+        // sample1: 4 handlers, other3: 2 handlers, sample2: 3 handlers
+        assertEquals(9, metrics.getHandlingTime().getCount());
+        assertEquals(5, metrics.getHandlerMetrics().size());
+
+        EventAdminMetrics.HandlerMetrics failingHandlerMetrics = metrics.getHandlerMetrics(failingEventHandler);
+        assertEquals(1, failingHandlerMetrics.getExceptions());
+        assertEquals(1, failingHandlerMetrics.getHandlingTime().getCount());
+        assertEquals(3, metrics.getHandlerMetrics(eventHandlerAll).getHandlingTime().getCount());
+
+        ((MockEventAdmin) eventAdmin).resetMetrics();
+        metrics = context.getEventAdminMetrics();
+        assertEquals(0, metrics.getSentEvents());
+        assertEquals(0, metrics.getHandlingTime().getCount());
+    }
+
+    private static class DummyBatchEventHandler implements BatchEventHandler {
+
+        private final List<Event> receivedEvents = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final List<Event> singleEvents = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void handleEvents(List<Event> events) {
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            receivedEvents.addAll(events);
+            batchSizes.add(events.size());
+        }
+
+        @Override
+        public void handleEvent(Event event) {
+            singleEvents.add(event);
+        }
+
+        public void release() {
+            released.countDown();
+        }
+
+        public List<Event> getReceivedEvents() {
+            return List.copyOf(receivedEvents);
+        }
+
+        public List<Integer> getBatchSizes() {
+            return List.copyOf(batchSizes);
+        }
+
+        public List<Event> getSingleEvents() {
+            return List.copyOf(singleEvents);
+        }
+    }
+
+    private static class OrderedEventHandler implements EventHandler {
+
+        private final List<Integer> receivedIndexes = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch latch;
+
+        OrderedEventHandler(int expectedEventCount) {
+            latch = new CountDownLatch(expectedEventCount);
+        }
+
+        @Override
+        public void handleEvent(Event event) {
+            receivedIndexes.add((Integer) event.getProperty("index"));
+            latch.countDown();
+        }
+
+        public void await() throws InterruptedException {
+            latch.await();
+        }
+
+        public List<Integer> getReceivedIndexes() {
+            return receivedIndexes;
+        }
+    }
+
     private static class DummyEventHandler implements EventHandler {
 
         private final List<Event> receivedEvents = new ArrayList<Event>();
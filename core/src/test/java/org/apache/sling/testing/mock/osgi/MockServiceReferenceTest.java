@@ -30,6 +30,7 @@ import org.osgi.framework.ServiceReference;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 public class MockServiceReferenceTest {
@@ -75,4 +76,29 @@ public class MockServiceReferenceTest {
         assertEquals(3, this.serviceReference.getProperties().size());
         assertEquals("value1", this.serviceReference.getProperties().get("customProp1"));
     }
+
+    @Test
+    public void testPropertiesSnapshot() {
+        Dictionary<String, Object> snapshot = this.serviceReference.getProperties();
+
+        ((MockServiceReference<?>) this.serviceReference).setProperty("customProp2", "value2");
+        assertEquals("value2", this.serviceReference.getProperty("customProp2"));
+        assertEquals(4, this.serviceReference.getProperties().size());
+
+        // previously returned properties are not affected
+        assertEquals(3, snapshot.size());
+        assertNull(snapshot.get("customProp2"));
+    }
+
+    @Test
+    public void testPropertiesCopy() {
+        Dictionary<String, Object> copy = this.serviceReference.getProperties();
+        copy.put("customProp2", "value2");
+        copy.remove("customProp1");
+
+        // changing the returned copy does not affect the registration
+        assertNull(this.serviceReference.getProperty("customProp2"));
+        assertNotNull(this.serviceReference.getProperty("customProp1"));
+        assertEquals(3, this.serviceReference.getProperties().size());
+    }
 }
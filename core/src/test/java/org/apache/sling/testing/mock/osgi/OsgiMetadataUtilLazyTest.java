@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import org.apache.sling.testing.mock.osgi.OsgiMetadataUtil.OsgiMetadata;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs in a separate surefire execution with lazy metadata parsing enabled
+ * (see {@link OsgiMetadataUtil#PROPERTY_METADATA_LAZY}).
+ */
+public class OsgiMetadataUtilLazyTest {
+
+    @Test
+    public void testLazyMetadata() {
+        LazyComponentDescriptorResolver resolver = OsgiMetadataUtil.getLazyComponentDescriptorResolver();
+        assertNotNull("lazy metadata parsing not enabled", resolver);
+
+        // starting a bundle context looks up the built-in services, which have no metadata
+        BundleContext bundleContext = MockOsgi.newBundleContext();
+        assertEquals(0, resolver.getParsedDescriptorCount());
+
+        OsgiMetadata metadata = OsgiMetadataUtil.getMetadata(Service3.class);
+        assertNotNull(metadata);
+        assertEquals(5, metadata.getReferences().size());
+        assertEquals(1, resolver.getParsedDescriptorCount());
+
+        assertNull(OsgiMetadataUtil.getMetadata(OsgiMetadataUtilTest.ServiceWithoutMetadata.class));
+        assertEquals(1, resolver.getParsedDescriptorCount());
+
+        // documents not named after their class and not declared in a manifest require the classpath scan
+        assertNull(OsgiMetadataUtil.getMetadata(LazyComponentDescriptorResolverTest.ServiceImpl.class));
+        assertEquals(1, resolver.getParsedDescriptorCount());
+
+        MockOsgi.shutdown(bundleContext);
+    }
+}
@@ -59,6 +59,19 @@ public class OsgiMetadataUtilTest {
                 (String[]) props.get("adaptables"));
     }
 
+    @Test
+    public void testScanMetadataDescriptorsParallel() {
+        Map<String, ComponentDescriptor> sequential = OsgiMetadataUtil.scanMetadataDescriptors(false);
+        Map<String, ComponentDescriptor> parallel = OsgiMetadataUtil.scanMetadataDescriptors(true);
+        assertEquals(sequential.keySet(), parallel.keySet());
+        for (Map.Entry<String, ComponentDescriptor> entry : sequential.entrySet()) {
+            ComponentDescriptor descriptor = parallel.get(entry.getKey());
+            assertEquals(entry.getValue().getName(), descriptor.getName());
+            assertEquals(entry.getValue().getServiceInterfaces(), descriptor.getServiceInterfaces());
+            assertEquals(entry.getValue().getReferences(), descriptor.getReferences());
+        }
+    }
+
     @Test
     public void testNoMetadata() {
         OsgiMetadata metadata = OsgiMetadataUtil.getMetadata(ServiceWithoutMetadata.class);
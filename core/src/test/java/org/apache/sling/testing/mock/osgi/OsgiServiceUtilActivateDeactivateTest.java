@@ -68,6 +68,22 @@ public class OsgiServiceUtilActivateDeactivateTest {
         assertFalse(service.isActivated());
     }
 
+    @Test
+    public void testService1RepeatedActivation() {
+        for (int i = 0; i < 3; i++) {
+            Service1 service = new Service1();
+            BundleContext otherBundleContext = MockOsgi.newBundleContext();
+
+            assertTrue(MockOsgi.activate(service, otherBundleContext, map));
+            assertTrue(service.isActivated());
+            assertSame(otherBundleContext, service.getComponentContext().getBundleContext());
+
+            assertTrue(MockOsgi.deactivate(service, otherBundleContext, map));
+            assertFalse(service.isActivated());
+            MockOsgi.shutdown(otherBundleContext);
+        }
+    }
+
     @Test
     public void testService1Constructor() {
         Service1Constructor service = MockOsgi.activateInjectServices(Service1Constructor.class, bundleContext, map);
@@ -246,6 +262,20 @@ public class OsgiServiceUtilActivateDeactivateTest {
         }
     }
 
+    @Test
+    public void testReferenceInConstructorAfterServiceRegistration() {
+        try {
+            MockOsgi.activateInjectServices(ServiceReferenceInConstructor.class, bundleContext);
+            Assert.fail("Unresolvable mandatory reference in constructor should lead to ReferenceViolationException");
+        } catch (ReferenceViolationException e) {
+            // expected
+        }
+
+        // the constructor injection plan is cached per class, but the references are resolved on each activation
+        bundleContext.registerService(Service1.class, new Service1(), null);
+        assertNotNull(MockOsgi.activateInjectServices(ServiceReferenceInConstructor.class, bundleContext));
+    }
+
     /**
      * SLING-11860 verify OsgiServiceUtil#activateDeactivate invokes the correct activate and deactivate methods
      */
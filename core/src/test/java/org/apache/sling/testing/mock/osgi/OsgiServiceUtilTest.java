@@ -18,12 +18,14 @@
  */
 package org.apache.sling.testing.mock.osgi;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service1;
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service2;
@@ -46,6 +48,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceRegistration;
 
@@ -76,6 +79,121 @@ public class OsgiServiceUtilTest {
         MockOsgi.shutdown(bundleContext);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testServiceInfoConfig() {
+        Dictionary<String, Object> props = new Hashtable<>();
+        props.put("prop1", "value1");
+        ServiceRegistration<ServiceInterface1> registration =
+                bundleContext.registerService(ServiceInterface1.class, new Service1(), props);
+
+        OsgiServiceUtil.ServiceInfo<ServiceInterface1> serviceInfo =
+                new OsgiServiceUtil.ServiceInfo<>((MockServiceRegistration<ServiceInterface1>) registration);
+        Map<String, Object> config = serviceInfo.getServiceConfig();
+        assertEquals("value1", config.get("prop1"));
+        assertTrue(config.containsKey(Constants.SERVICE_ID));
+        assertEquals(MapUtil.toMap(registration.getReference().getProperties()), config);
+        assertSame(config, serviceInfo.getServiceConfig());
+
+        // later changes of the service properties are not visible in the service info
+        Dictionary<String, Object> newProps = new Hashtable<>();
+        newProps.put("prop1", "value2");
+        registration.setProperties(newProps);
+        assertEquals("value1", config.get("prop1"));
+        assertEquals("value1", serviceInfo.getServiceConfig().get("prop1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testServiceInfoConfigModifiable() {
+        Dictionary<String, Object> props = new Hashtable<>();
+        props.put("prop1", "value1");
+        props.put("prop2", "value2");
+        ServiceRegistration<ServiceInterface1> registration =
+                bundleContext.registerService(ServiceInterface1.class, new Service1(), props);
+
+        // bind methods may modify the map they get, as with the copied map before
+        OsgiServiceUtil.ServiceInfo<ServiceInterface1> serviceInfo =
+                new OsgiServiceUtil.ServiceInfo<>((MockServiceRegistration<ServiceInterface1>) registration);
+        Map<String, Object> config = serviceInfo.getServiceConfig();
+        config.put("prop1", "changed");
+        config.remove("prop2");
+        config.entrySet().removeIf(entry -> Constants.OBJECTCLASS.equals(entry.getKey()));
+        assertEquals("changed", config.get("prop1"));
+        assertFalse(config.containsKey("prop2"));
+        assertFalse(config.containsKey(Constants.OBJECTCLASS));
+
+        // service properties are not affected
+        assertEquals("value1", registration.getReference().getProperty("prop1"));
+        assertEquals("value2", registration.getReference().getProperty("prop2"));
+        Map<String, Object> otherConfig = new OsgiServiceUtil.ServiceInfo<>(
+                        (MockServiceRegistration<ServiceInterface1>) registration)
+                .getServiceConfig();
+        assertEquals("value1", otherConfig.get("prop1"));
+        assertEquals("value2", otherConfig.get("prop2"));
+        assertTrue(otherConfig.containsKey(Constants.OBJECTCLASS));
+    }
+
+    @Test
+    public void testServiceInfoConfigEntrySetValue() {
+        Dictionary<String, Object> props = new Hashtable<>();
+        props.put("prop1", "value1");
+        ServiceRegistration<ServiceInterface1> registration =
+                bundleContext.registerService(ServiceInterface1.class, new Service1(), props);
+
+        Map<String, Object> config = new OsgiServiceUtil.ServiceInfo<>(
+                        (MockServiceRegistration<ServiceInterface1>) registration)
+                .getServiceConfig();
+        for (Map.Entry<String, Object> entry : config.entrySet()) {
+            if ("prop1".equals(entry.getKey())) {
+                assertEquals("value1", entry.setValue("changed"));
+                assertEquals("changed", entry.getValue());
+            }
+        }
+        assertEquals("changed", config.get("prop1"));
+
+        // service properties are not affected
+        assertEquals("value1", registration.getReference().getProperty("prop1"));
+    }
+
+    @Test
+    public void testServiceInfoConfigConcurrentModification() throws Exception {
+        ServiceRegistration<ServiceInterface1> registration =
+                bundleContext.registerService(ServiceInterface1.class, new Service1(), null);
+        int threadCount = 8;
+
+        for (int run = 0; run < 100; run++) {
+            Map<String, Object> config = new OsgiServiceUtil.ServiceInfo<>(
+                            (MockServiceRegistration<ServiceInterface1>) registration)
+                    .getServiceConfig();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                String key = "prop" + i;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    config.put(key, key);
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // all modifications end up in the same copy
+            for (int i = 0; i < threadCount; i++) {
+                assertEquals("prop" + i, config.get("prop" + i));
+            }
+        }
+        assertNull(registration.getReference().getProperty("prop0"));
+    }
+
     @Test
     public void testService3() {
         Service3 service3 = new Service3();
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service1;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service2;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service4;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface2;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelComponentActivatorTest {
+
+    private BundleContext bundleContext;
+
+    @Before
+    public void setUp() {
+        bundleContext = MockOsgi.newBundleContext();
+    }
+
+    @After
+    public void tearDown() {
+        MockOsgi.shutdown(bundleContext);
+    }
+
+    @Test
+    public void testGetDependencies() {
+        assertEquals(
+                List.of(Set.of(2, 3), Set.of(3), Set.of(), Set.of()),
+                ParallelComponentActivator.getDependencies(
+                        List.of(Service3.class, Service4.class, Service2.class, Service1.class)));
+    }
+
+    @Test
+    public void testGetActivationOrder() {
+        assertEquals(
+                List.of(2, 3, 0, 1),
+                ParallelComponentActivator.getActivationOrder(List.of(Set.of(2, 3), Set.of(3), Set.of(), Set.of())));
+    }
+
+    @Test
+    public void testGetActivationOrderCycle() {
+        assertEquals(
+                List.of(0, 1, 2),
+                ParallelComponentActivator.getActivationOrder(List.of(Set.of(1), Set.of(0), Set.of(1))));
+    }
+
+    @Test
+    public void testRegisterInjectActivateServices() {
+        // would fail with a reference violation when activated in the given order
+        List<Object> components = MockOsgi.registerInjectActivateServices(
+                bundleContext, List.of(Service3.class, Service4.class, Service2.class, Service1.class));
+
+        assertEquals(4, components.size());
+        Service3 service3 = (Service3) components.get(0);
+        Service4 service4 = (Service4) components.get(1);
+        Service2 service2 = (Service2) components.get(2);
+        Service1 service1 = (Service1) components.get(3);
+
+        assertSame(service1, service3.getReference1());
+        assertTrue(service3.getReferences2().contains(service2));
+        assertTrue(service3.getReferences3().contains(service2));
+        assertSame(service1, service4.getReference1());
+    }
+
+    @Test
+    public void testRegisterInjectActivateServicesInstances() {
+        Service3 service3 = new Service3();
+        Service2 service2 = new Service2();
+        List<Object> components = MockOsgi.registerInjectActivateServices(
+                bundleContext, List.of(service3, Service4.class, service2, Service1.class));
+
+        assertEquals(4, components.size());
+        assertSame(service3, components.get(0));
+        Service4 service4 = (Service4) components.get(1);
+        assertSame(service2, components.get(2));
+        Service1 service1 = (Service1) components.get(3);
+
+        assertNotNull(service3.getComponentContext());
+        assertSame(service1, service3.getReference1());
+        assertTrue(service3.getReferences2().contains(service2));
+        assertSame(service1, service4.getReference1());
+    }
+
+    @Test
+    public void testActivateDedicatedThreads() {
+        List<String> threadNames = ParallelComponentActivator.activate(
+                List.of(Service1.class, Service2.class),
+                index -> Thread.currentThread().getName(),
+                component -> {},
+                component -> {});
+
+        for (String threadName : threadNames) {
+            assertTrue(threadName, threadName.startsWith("osgi-mock-component-activator-"));
+        }
+    }
+
+    @Test
+    public void testActivateRollback() {
+        List<String> registered = Collections.synchronizedList(new ArrayList<>());
+        List<String> unregistered = Collections.synchronizedList(new ArrayList<>());
+        // service3 references service2 and service1, and is activated after both are registered
+        try {
+            ParallelComponentActivator.activate(
+                    List.of(Service3.class, Service2.class, Service1.class),
+                    index -> {
+                        if (index == 0) {
+                            throw new IllegalStateException("activation failed");
+                        }
+                        return "component" + index;
+                    },
+                    registered::add,
+                    unregistered::add);
+            fail("exception expected");
+        } catch (IllegalStateException ex) {
+            assertEquals("activation failed", ex.getMessage());
+        }
+
+        assertEquals(Set.of("component1", "component2"), Set.copyOf(registered));
+        List<String> reversed = new ArrayList<>(registered);
+        Collections.reverse(reversed);
+        assertEquals(reversed, unregistered);
+    }
+
+    @Test
+    public void testRegisterInjectActivateServicesMissingReferenceRollback() {
+        try {
+            MockOsgi.registerInjectActivateServices(bundleContext, List.of(Service4.class, Service2.class));
+            fail("exception expected");
+        } catch (ReferenceViolationException ex) {
+            // expected
+        }
+
+        // service2 was registered before the activation of service4 failed
+        assertNull(bundleContext.getServiceReference(ServiceInterface2.class));
+    }
+
+    @Test
+    public void testDeactivate() {
+        List<String> deactivated = Collections.synchronizedList(new ArrayList<>());
+        // a references b, b references c, d is independent
+        ParallelComponentActivator.deactivate(
+                List.of("a", "b", "c", "d"),
+                List.of(Set.of(1), Set.of(2), Set.of(), Set.of()),
+                deactivated::add);
+
+        assertEquals(Set.of("a", "b", "c", "d"), Set.copyOf(deactivated));
+        assertTrue(deactivated.indexOf("a") < deactivated.indexOf("b"));
+        assertTrue(deactivated.indexOf("b") < deactivated.indexOf("c"));
+    }
+
+    @Test
+    public void testDeactivateDedicatedThreads() {
+        List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+        ParallelComponentActivator.deactivate(
+                List.of("a", "b"),
+                List.of(Set.of(), Set.of()),
+                component -> threadNames.add(Thread.currentThread().getName()));
+
+        assertEquals(2, threadNames.size());
+        for (String threadName : threadNames) {
+            assertTrue(threadName, threadName.startsWith("osgi-mock-component-activator-"));
+        }
+    }
+
+    @Test
+    public void testShutdownParallel() {
+        BundleContext parallelBundleContext = MockOsgi.newBundleContext();
+        List<Object> components = MockOsgi.registerInjectActivateServices(
+                parallelBundleContext, List.of(Service3.class, Service2.class, Service1.class));
+        Service3 service3 = (Service3) components.get(0);
+        File dataDir = parallelBundleContext.getDataFile("");
+        assertNotNull(service3.getComponentContext());
+
+        MockOsgi.setShutdownParallel(parallelBundleContext, true);
+        MockOsgi.shutdown(parallelBundleContext);
+
+        assertNull(service3.getComponentContext());
+        assertFalse(dataDir.exists());
+    }
+
+    @Test(expected = ReferenceViolationException.class)
+    public void testRegisterInjectActivateServicesMissingReference() {
+        MockOsgi.registerInjectActivateServices(bundleContext, List.of(Service4.class, Service2.class));
+    }
+}
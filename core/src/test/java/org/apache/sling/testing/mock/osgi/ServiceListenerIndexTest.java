@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+public class ServiceListenerIndexTest {
+
+    private static final String[] FILTERS = new String[] {
+        null,
+        "(objectClass=java.lang.String)",
+        "(OBJECTCLASS=java.lang.Integer)",
+        "(&(objectClass=java.lang.String)(prop1=value1))",
+        "(&(prop1=value1)(objectClass=java.lang.Integer))",
+        "(|(objectClass=java.lang.String)(objectClass=java.lang.Long))",
+        "(|(objectClass=java.lang.String)(prop1=value2))",
+        "(objectClass=java.lang.*)",
+        "(!(objectClass=java.lang.String))",
+        "(prop1=value1)",
+        "(objectClass=*)",
+        "(&(objectClass=java.lang.Long)(objectClass=java.lang.Number))"
+    };
+
+    private BundleContext bundleContext;
+    private ServiceListenerIndex underTest;
+
+    @Before
+    public void setUp() {
+        bundleContext = MockOsgi.newBundleContext();
+        underTest = new ServiceListenerIndex();
+    }
+
+    @After
+    public void tearDown() {
+        MockOsgi.shutdown(bundleContext);
+    }
+
+    @Test
+    public void testGetObjectClasses() {
+        assertNull(ServiceListenerIndex.getObjectClasses(null));
+        assertEquals(Set.of("a.B"), ServiceListenerIndex.getObjectClasses("(objectClass=a.B)"));
+        assertEquals(Set.of("a.B"), ServiceListenerIndex.getObjectClasses("(&(x=y)(objectClass=a.B))"));
+        assertEquals(
+                Set.of("a.B", "a.C"), ServiceListenerIndex.getObjectClasses("(|(objectClass=a.B)(objectClass=a.C))"));
+        assertNull(ServiceListenerIndex.getObjectClasses("(|(objectClass=a.B)(x=y))"));
+        assertNull(ServiceListenerIndex.getObjectClasses("(objectClass=a.*)"));
+        assertNull(ServiceListenerIndex.getObjectClasses("(!(objectClass=a.B))"));
+    }
+
+    @Test
+    public void testGetMatchingListenersSameAsAllFilters() throws Exception {
+        Map<ServiceListener, Filter> filters = new HashMap<>();
+        for (String filterString : FILTERS) {
+            ServiceListener listener = mock(ServiceListener.class);
+            Filter filter = bundleContext.createFilter(filterString);
+            underTest.add(listener, filter, filterString);
+            filters.put(listener, filter);
+        }
+
+        List<ServiceReference<?>> references = new ArrayList<>();
+        references.add(bundleContext
+                .registerService(String.class.getName(), "value", MapUtil.toDictionary(Map.of("prop1", "value1")))
+                .getReference());
+        references.add(bundleContext
+                .registerService(Integer.class.getName(), 5, MapUtil.toDictionary(Map.of("prop1", "value1")))
+                .getReference());
+        references.add(bundleContext
+                .registerService(
+                        new String[] {Long.class.getName(), Number.class.getName()},
+                        5L,
+                        MapUtil.toDictionary(Map.of("prop1", "value2")))
+                .getReference());
+        references.add(
+                bundleContext.registerService(Object.class.getName(), new Object(), null).getReference());
+
+        for (ServiceReference<?> reference : references) {
+            Set<ServiceListener> expected = new HashSet<>();
+            for (Map.Entry<ServiceListener, Filter> entry : filters.entrySet()) {
+                if (entry.getValue().match(reference)) {
+                    expected.add(entry.getKey());
+                }
+            }
+            List<ServiceListener> actual = underTest.getMatchingListeners(reference);
+            assertEquals(expected, new HashSet<>(actual));
+            assertEquals("no duplicates", expected.size(), actual.size());
+        }
+    }
+
+    @Test
+    public void testAddReplaceRemove() throws Exception {
+        ServiceListener listener = mock(ServiceListener.class);
+        ServiceReference<?> reference =
+                bundleContext.registerService(String.class.getName(), "value", null).getReference();
+
+        String integerFilter = "(objectClass=java.lang.Integer)";
+        underTest.add(listener, bundleContext.createFilter(integerFilter), integerFilter);
+        assertEquals(List.of(), underTest.getMatchingListeners(reference));
+
+        String stringFilter = "(objectClass=java.lang.String)";
+        underTest.add(listener, bundleContext.createFilter(stringFilter), stringFilter);
+        assertEquals(List.of(listener), underTest.getMatchingListeners(reference));
+
+        underTest.remove(listener);
+        assertEquals(List.of(), underTest.getMatchingListeners(reference));
+    }
+}
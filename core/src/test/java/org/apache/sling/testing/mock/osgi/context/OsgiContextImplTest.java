@@ -21,16 +21,21 @@ package org.apache.sling.testing.mock.osgi.context;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.sling.testing.mock.osgi.NoScrMetadataException;
 import org.apache.sling.testing.mock.osgi.testsvc.osgicontextimpl.MyComponent;
 import org.apache.sling.testing.mock.osgi.testsvc.osgicontextimpl.MyService;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service1;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service2;
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service3;
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.Service8CustomName;
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface1;
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface2;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface3;
+import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.ServiceInterface3Impl;
 import org.apache.sling.testing.mock.osgi.testsvc.osgiserviceutil.activatedeactivate.Service8;
 import org.junit.After;
 import org.junit.Before;
@@ -41,7 +46,9 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.util.tracker.ServiceTracker;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -209,6 +216,56 @@ public class OsgiContextImplTest {
         context.registerInjectActivateService(new Service8());
     }
 
+    @Test
+    public void testFork() {
+        List<Object> components =
+                context.registerInjectActivateServices(List.of(Service3.class, Service2.class, Service1.class));
+        Service3 service3 = (Service3) components.get(0);
+        Service2 service2 = (Service2) components.get(1);
+
+        context.fork();
+        assertTrue(context.isForked());
+        assertSame(components.get(2), context.getService(ServiceInterface1.class));
+
+        ServiceInterface3 service3Impl = new ServiceInterface3Impl();
+        context.registerService(ServiceInterface3.class, service3Impl);
+
+        // component of the parent is re-created in the child instead of binding the new service
+        Service3 forkedService3 = getService3();
+        assertNotSame(service3, forkedService3);
+        assertEquals(Set.of(service2, service3Impl), Set.copyOf(forkedService3.getReferences3()));
+        assertEquals(List.of(service2), service3.getReferences3());
+
+        context.discardFork();
+        assertFalse(context.isForked());
+        assertSame(service3, getService3());
+        assertEquals(1, context.getServices(ServiceInterface3.class, null).length);
+        assertNotNull(service3.getComponentContext());
+    }
+
+    @Test
+    public void testShutdownParallel() {
+        OsgiContextImpl parallelContext = new OsgiContextImpl();
+        parallelContext.setUp();
+        List<Object> components = parallelContext.registerInjectActivateServices(
+                List.of(Service3.class, Service2.class, Service1.class));
+        Service3 service3 = (Service3) components.get(0);
+        parallelContext.fork();
+        parallelContext.setShutdownParallel(true);
+
+        parallelContext.tearDown();
+        assertNull(service3.getComponentContext());
+    }
+
+    private Service3 getService3() {
+        for (ServiceInterface2 service : context.getServices(ServiceInterface2.class, null)) {
+            if (service instanceof Service3) {
+                return (Service3) service;
+            }
+        }
+        return null;
+    }
+
     @Test(expected = RuntimeException.class)
     public void testRegisterInjectActivate_RefrenceMissing_Instance() {
         context.registerInjectActivateService(new Service3());
@@ -22,6 +22,7 @@ import org.apache.sling.testing.mock.osgi.context.ContextCallback;
 import org.apache.sling.testing.mock.osgi.context.ContextPlugins;
 import org.apache.sling.testing.mock.osgi.context.OsgiContextImpl;
 import org.jetbrains.annotations.NotNull;
+import org.junit.Ignore;
 import org.junit.rules.ExternalResource;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
@@ -30,12 +31,35 @@ import org.osgi.annotation.versioning.ProviderType;
 
 /**
  * JUnit rule for setting up and tearing down OSGi context for unit tests.
+ * <p>
+ * To set up the context only once per test class, use it as class rule and as rule on the same static field:
+ * </p>
+ * <pre>
+ * &#64;ClassRule
+ * &#64;Rule
+ * public static final OsgiContext context = new OsgiContext();
+ * </pre>
+ * <p>
+ * The context is then set up before and torn down after all test methods of the class, and forked for each
+ * test method: each test method starts with the services and configurations registered during setup and in
+ * <code>&#64;BeforeClass</code> methods. Services, listeners and configurations registered or changed by the test
+ * method are discarded after it. Listeners registered before the fork are notified about the changes made by
+ * test methods, and about reverting them after each test method. The setup and teardown callbacks are called
+ * only once per test class.
+ * </p>
+ * <p>
+ * Using the context only as class rule is not supported, as the test methods would share and modify the same
+ * context: the test class fails with an {@link IllegalStateException} after its test methods are executed.
+ * </p>
  */
 @ProviderType
 public final class OsgiContext extends OsgiContextImpl implements TestRule {
 
     private final ContextPlugins plugins;
     private final TestRule delegate;
+    private final TestRule classDelegate;
+    private boolean classRule;
+    private boolean ruleApplied;
 
     /**
      * Initialize OSGi context.
@@ -77,22 +101,87 @@ public final class OsgiContext extends OsgiContextImpl implements TestRule {
         this.delegate = new ExternalResource() {
             @Override
             protected void before() {
-                plugins.executeBeforeSetUpCallback(OsgiContext.this);
-                OsgiContext.this.setUp();
-                plugins.executeAfterSetUpCallback(OsgiContext.this);
+                if (classRule) {
+                    // test method starts with the state after setting up the class rule
+                    OsgiContext.this.fork();
+                    return;
+                }
+                setUpContext();
             }
 
             @Override
             protected void after() {
-                plugins.executeBeforeTearDownCallback(OsgiContext.this);
-                OsgiContext.this.tearDown();
-                plugins.executeAfterTearDownCallback(OsgiContext.this);
+                if (classRule) {
+                    OsgiContext.this.discardFork();
+                    return;
+                }
+                tearDownContext();
             }
         };
+
+        // wrap {@link ExternalResource} class rule executes each test class once
+        this.classDelegate = new ExternalResource() {
+            @Override
+            protected void before() {
+                setUpContext();
+                classRule = true;
+                ruleApplied = false;
+            }
+
+            @Override
+            protected void after() {
+                classRule = false;
+                tearDownContext();
+            }
+        };
+    }
+
+    private void setUpContext() {
+        plugins.executeBeforeSetUpCallback(this);
+        this.setUp();
+        plugins.executeAfterSetUpCallback(this);
+    }
+
+    private void tearDownContext() {
+        plugins.executeBeforeTearDownCallback(this);
+        this.tearDown();
+        plugins.executeAfterTearDownCallback(this);
     }
 
     @Override
     public Statement apply(final Statement base, final Description description) {
-        return this.delegate.apply(base, description);
+        if (description.isTest()) {
+            ruleApplied = true;
+            return this.delegate.apply(base, description);
+        }
+        // applied as class rule
+        Statement classStatement = this.classDelegate.apply(base, description);
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                classStatement.evaluate();
+                if (!ruleApplied && hasTests(description)) {
+                    throw new IllegalStateException("OsgiContext in " + description.getDisplayName()
+                            + " is used as @ClassRule, but not as @Rule: annotate the static field with both"
+                            + " @ClassRule and @Rule to fork the context for each test method.");
+                }
+            }
+        };
+    }
+
+    /**
+     * @param description Description of a test class
+     * @return true if the test class contains test methods which are not ignored
+     */
+    private static boolean hasTests(Description description) {
+        if (description.isTest()) {
+            return description.getAnnotation(Ignore.class) == null;
+        }
+        for (Description child : description.getChildren()) {
+            if (hasTests(child)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi.junit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OsgiContextClassRuleOnlyTest {
+
+    private static final AtomicInteger EXECUTED_TESTS = new AtomicInteger();
+
+    @Test
+    public void testClassRuleWithoutRuleFails() {
+        Result result = JUnitCore.runClasses(ClassRuleOnly.class);
+
+        // test class fails after its test methods are executed
+        assertEquals(1, result.getRunCount());
+        assertEquals(1, EXECUTED_TESTS.get());
+        assertEquals(1, result.getFailureCount());
+        assertTrue(result.getFailures().get(0).getException() instanceof IllegalStateException);
+    }
+
+    public static class ClassRuleOnly {
+
+        @ClassRule
+        public static final OsgiContext context = new OsgiContext();
+
+        @Test
+        public void testModify() {
+            EXECUTED_TESTS.incrementAndGet();
+            context.registerService(Integer.class, 5);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi.junit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.testing.mock.osgi.MapUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("null")
+public class OsgiContextClassRuleTest {
+
+    private static final String PID = "test.pid";
+    private static final AtomicInteger AFTER_SETUP_COUNT = new AtomicInteger();
+    private static final List<Integer> INTEGER_SERVICE_EVENTS = Collections.synchronizedList(new ArrayList<>());
+
+    @ClassRule
+    @Rule
+    public static final OsgiContext context = new OsgiContextBuilder()
+            .afterSetUp(c -> AFTER_SETUP_COUNT.incrementAndGet())
+            .build();
+
+    @BeforeClass
+    public static void setUpFixture() throws IOException, InvalidSyntaxException {
+        assertFalse(context.isForked());
+        context.bundleContext()
+                .addServiceListener(
+                        event -> INTEGER_SERVICE_EVENTS.add(event.getType()), "(objectClass=java.lang.Integer)");
+        context.registerService(String.class, "shared");
+        context.getService(ConfigurationAdmin.class)
+                .getConfiguration(PID)
+                .update(MapUtil.toDictionary("prop1", "value1"));
+    }
+
+    @AfterClass
+    public static void tearDownFixture() {
+        assertFalse(context.isForked());
+        assertEquals("shared", context.getService(String.class));
+        assertNull(context.getService(Integer.class));
+
+        // listener registered before the forks saw the changes of both test methods, and their reverts
+        assertEquals(
+                List.of(
+                        ServiceEvent.REGISTERED,
+                        ServiceEvent.UNREGISTERING,
+                        ServiceEvent.REGISTERED,
+                        ServiceEvent.UNREGISTERING),
+                INTEGER_SERVICE_EVENTS);
+    }
+
+    @Test
+    public void testSharedFixture1() throws IOException {
+        assertSharedFixtureAndModify();
+    }
+
+    @Test
+    public void testSharedFixture2() throws IOException {
+        assertSharedFixtureAndModify();
+    }
+
+    @Test
+    public void testSetUpOnce() {
+        assertEquals(1, AFTER_SETUP_COUNT.get());
+        assertTrue(context.isForked());
+    }
+
+    private static void assertSharedFixtureAndModify() throws IOException {
+        assertEquals("shared", context.getService(String.class));
+        assertNull(context.getService(Integer.class));
+        Configuration config = context.getService(ConfigurationAdmin.class).getConfiguration(PID);
+        assertEquals("value1", config.getProperties().get("prop1"));
+
+        // changes must not be visible in other test methods
+        context.registerService(Integer.class, 5);
+        assertEquals(
+                Integer.valueOf(ServiceEvent.REGISTERED), INTEGER_SERVICE_EVENTS.get(INTEGER_SERVICE_EVENTS.size() - 1));
+        config.update(MapUtil.toDictionary("prop1", "value2"));
+    }
+}
@@ -34,6 +34,7 @@ import org.osgi.annotation.versioning.ConsumerType;
 public final class OsgiContext extends OsgiContextImpl {
 
     private final ContextPlugins plugins;
+    private final boolean perClass;
     private boolean isSetUp;
 
     /**
@@ -48,7 +49,17 @@ public final class OsgiContext extends OsgiContextImpl {
      * @param contextPlugins Context plugins
      */
     OsgiContext(@NotNull final ContextPlugins contextPlugins) {
+        this(contextPlugins, false);
+    }
+
+    /**
+     * Initialize OSGi context.
+     * @param contextPlugins Context plugins
+     * @param perClass Whether the context is set up once per test class
+     */
+    OsgiContext(@NotNull final ContextPlugins contextPlugins, final boolean perClass) {
         this.plugins = contextPlugins;
+        this.perClass = perClass;
     }
 
     /**
@@ -74,4 +85,8 @@ public final class OsgiContext extends OsgiContextImpl {
     boolean isSetUp() {
         return this.isSetUp;
     }
+
+    boolean isPerClass() {
+        return this.perClass;
+    }
 }
@@ -33,6 +33,7 @@ import org.osgi.annotation.versioning.ProviderType;
 public final class OsgiContextBuilder {
 
     private final @NotNull ContextPlugins plugins = new ContextPlugins();
+    private boolean perClass;
 
     /**
      * Create builder.
@@ -101,10 +102,28 @@ public final class OsgiContextBuilder {
         return this;
     }
 
+    /**
+     * Sets up the context only once per test class instead of once per test method. Before each test method
+     * the context is forked, and the fork is discarded after it, so each test method starts with the services
+     * and configurations registered during setup, in static initializers and in <code>@BeforeAll</code> methods.
+     * <p>
+     * The context has to be stored in a static field of the test class, or in an instance field of a test class
+     * annotated with <code>@TestInstance(Lifecycle.PER_CLASS)</code>, otherwise {@link OsgiContextExtension}
+     * fails with an {@link IllegalStateException}. Test methods of nested test classes
+     * share the context of the enclosing class. The after setup callbacks are called once after the context
+     * is set up, the teardown callbacks once after all test methods of the class are executed.
+     * </p>
+     * @return this
+     */
+    public @NotNull OsgiContextBuilder perClass() {
+        this.perClass = true;
+        return this;
+    }
+
     /**
      * @return Build {@link OsgiContext} instance.
      */
     public @NotNull OsgiContext build() {
-        return new OsgiContext(this.plugins);
+        return new OsgiContext(this.plugins, this.perClass);
     }
 }
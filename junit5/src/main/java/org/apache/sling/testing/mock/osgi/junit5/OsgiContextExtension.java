@@ -19,11 +19,15 @@
 package org.apache.sling.testing.mock.osgi.junit5;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.function.Consumer;
 
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.AfterEachCallback;
 import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.api.extension.ParameterContext;
@@ -34,13 +38,37 @@ import org.junit.jupiter.api.extension.TestInstancePostProcessor;
  * JUnit 5 extension that allows to inject {@link OsgiContext} (or subclasses of
  * it) parameters in test methods, and ensures that the context is set up and
  * teared down properly for each test method.
+ * <p>
+ * Contexts built with {@link OsgiContextBuilder#perClass()} are set up once per test class instead,
+ * and forked for each test method.
+ * </p>
  */
 public final class OsgiContextExtension
         implements ParameterResolver,
                 TestInstancePostProcessor,
+                BeforeAllCallback,
                 BeforeEachCallback,
                 AfterEachCallback,
-                AfterTestExecutionCallback {
+                AfterTestExecutionCallback,
+                AfterAllCallback {
+
+    /**
+     * Checks if test class has a static {@link OsgiContext} field with a context
+     * that is set up once per test class, and sets it up.
+     */
+    @Override
+    public void beforeAll(ExtensionContext extensionContext) throws Exception {
+        Field osgiContextField = getFieldFromTestInstance(extensionContext.getRequiredTestClass(), OsgiContext.class);
+        if (osgiContextField != null && Modifier.isStatic(osgiContextField.getModifiers())) {
+            OsgiContext context = (OsgiContext) osgiContextField.get(null);
+            if (context != null && context.isPerClass()) {
+                // may be set up already if the test instance is shared by all test methods
+                if (context != OsgiContextStore.getClassOsgiContext(extensionContext)) {
+                    setUpClassOsgiContext(extensionContext, context);
+                }
+            }
+        }
+    }
 
     /**
      * Checks if test class has a {@link OsgiContext} or derived field. If it has
@@ -53,7 +81,25 @@ public final class OsgiContextExtension
         Field osgiContextField = getFieldFromTestInstance(testInstance, OsgiContext.class);
         if (osgiContextField != null) {
             OsgiContext context = (OsgiContext) osgiContextField.get(testInstance);
-            if (context != null) {
+            boolean sharedTestInstance =
+                    extensionContext.getTestInstanceLifecycle().orElse(null) == Lifecycle.PER_CLASS;
+            if (context != null
+                    && context.isPerClass()
+                    && !Modifier.isStatic(osgiContextField.getModifiers())
+                    && !sharedTestInstance) {
+                throw new IllegalStateException("OsgiContext in field '" + osgiContextField.getName() + "' of "
+                        + testInstance.getClass().getName() + " is set up per test class, "
+                        + "which requires a static field or a test class annotated with "
+                        + "@TestInstance(Lifecycle.PER_CLASS).");
+            }
+            if (context != null && context == OsgiContextStore.getClassOsgiContext(extensionContext)) {
+                // static field already set up in beforeAll
+                return;
+            }
+            if (context != null && context.isPerClass() && sharedTestInstance) {
+                // test instance is shared by all test methods
+                setUpClassOsgiContext(extensionContext, context);
+            } else if (context != null) {
                 if (!context.isSetUp()) {
                     context.setUpContext();
                 }
@@ -79,15 +125,26 @@ public final class OsgiContextExtension
      */
     @Override
     public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
-        return OsgiContextStore.getOrCreateOsgiContext(extensionContext, extensionContext.getRequiredTestInstance());
+        Object testInstance = extensionContext.getRequiredTestInstance();
+        OsgiContext classContext = OsgiContextStore.getClassOsgiContext(extensionContext);
+        if (classContext != null && OsgiContextStore.getOsgiContext(extensionContext, testInstance) == null) {
+            return classContext;
+        }
+        return OsgiContextStore.getOrCreateOsgiContext(extensionContext, testInstance);
     }
 
     @Override
     public void beforeEach(ExtensionContext extensionContext) throws Exception {
-        applyOsgiContext(extensionContext, osgiContext -> {
+        if (!applyOsgiContext(extensionContext, osgiContext -> {
             // call context plugins setup after all @BeforeEach methods were called
             osgiContext.getContextPlugins().executeAfterSetUpCallback(osgiContext);
-        });
+        })) {
+            // test method starts with the state after setting up the class context
+            OsgiContext classContext = OsgiContextStore.getClassOsgiContext(extensionContext);
+            if (classContext != null) {
+                classContext.fork();
+            }
+        }
     }
 
     @Override
@@ -100,22 +157,51 @@ public final class OsgiContextExtension
 
     @Override
     public void afterEach(ExtensionContext extensionContext) {
-        applyOsgiContext(extensionContext, osgiContext -> {
+        if (!applyOsgiContext(extensionContext, osgiContext -> {
             // call context plugins setup after all @AfterEach methods were called
             osgiContext.getContextPlugins().executeAfterTearDownCallback(osgiContext);
 
             // Tear down {@link OsgiContext} after test is complete.
             osgiContext.tearDownContext();
             OsgiContextStore.removeOsgiContext(extensionContext, extensionContext.getRequiredTestInstance());
-        });
+        })) {
+            // restore the state after setting up the class context
+            OsgiContext classContext = OsgiContextStore.getClassOsgiContext(extensionContext);
+            if (classContext != null && classContext.isForked()) {
+                classContext.discardFork();
+            }
+        }
+    }
+
+    /**
+     * Tears down the {@link OsgiContext} shared by all test methods of the test class, if there is one.
+     */
+    @Override
+    public void afterAll(ExtensionContext extensionContext) {
+        OsgiContext osgiContext = OsgiContextStore.removeClassOsgiContext(extensionContext);
+        if (osgiContext != null) {
+            osgiContext.getContextPlugins().executeBeforeTearDownCallback(osgiContext);
+            osgiContext.tearDownContext();
+            osgiContext.getContextPlugins().executeAfterTearDownCallback(osgiContext);
+        }
     }
 
-    private void applyOsgiContext(ExtensionContext extensionContext, Consumer<OsgiContext> consumer) {
+    private boolean applyOsgiContext(ExtensionContext extensionContext, Consumer<OsgiContext> consumer) {
         OsgiContext osgiContext =
                 OsgiContextStore.getOsgiContext(extensionContext, extensionContext.getRequiredTestInstance());
         if (osgiContext != null) {
             consumer.accept(osgiContext);
+            return true;
+        }
+        return false;
+    }
+
+    private void setUpClassOsgiContext(ExtensionContext extensionContext, OsgiContext osgiContext) {
+        if (!osgiContext.isSetUp()) {
+            osgiContext.setUpContext();
         }
+        osgiContext.getContextPlugins().executeAfterSetUpCallback(osgiContext);
+        OsgiContextStore.storeClassOsgiContext(extensionContext, osgiContext);
     }
 
     private Field getFieldFromTestInstance(Object testInstance, Class<?> type) {
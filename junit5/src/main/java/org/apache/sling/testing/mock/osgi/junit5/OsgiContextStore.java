@@ -29,6 +29,7 @@ import org.junit.jupiter.api.extension.ExtensionContext.Store;
 final class OsgiContextStore {
 
     private static final Namespace OSGi_CONTEXT_NAMESPACE = Namespace.create(OsgiContextExtension.class);
+    private static final String CLASS_CONTEXT_KEY = OsgiContextStore.class.getName() + ".classContext";
 
     private OsgiContextStore() {
         // static methods only
@@ -81,6 +82,37 @@ final class OsgiContextStore {
         getStore(extensionContext).put(testInstance, osgiContext);
     }
 
+    /**
+     * Get {@link OsgiContext} shared by all test methods of a test class from extension context store.
+     * Contexts stored for enclosing test classes are returned as well.
+     * @param extensionContext Extension context
+     * @return OsgiContext or null
+     */
+    @SuppressWarnings("null")
+    public static OsgiContext getClassOsgiContext(ExtensionContext extensionContext) {
+        return getStore(extensionContext).get(CLASS_CONTEXT_KEY, OsgiContext.class);
+    }
+
+    /**
+     * Store {@link OsgiContext} shared by all test methods of a test class in extension context store.
+     * @param extensionContext Extension context of the test class
+     * @param osgiContext OSGi context
+     */
+    public static void storeClassOsgiContext(ExtensionContext extensionContext, OsgiContext osgiContext) {
+        getStore(extensionContext).put(CLASS_CONTEXT_KEY, osgiContext);
+    }
+
+    /**
+     * Removes {@link OsgiContext} shared by all test methods of a test class from extension context store.
+     * Contexts stored for enclosing test classes are not removed.
+     * @param extensionContext Extension context of the test class
+     * @return Removed OsgiContext or null
+     */
+    @SuppressWarnings("null")
+    public static OsgiContext removeClassOsgiContext(ExtensionContext extensionContext) {
+        return getStore(extensionContext).remove(CLASS_CONTEXT_KEY, OsgiContext.class);
+    }
+
     private static Store getStore(ExtensionContext context) {
         return context.getStore(OSGi_CONTEXT_NAMESPACE);
     }
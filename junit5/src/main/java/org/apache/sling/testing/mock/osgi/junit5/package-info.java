@@ -19,5 +19,5 @@
 /**
  * JUnit 5 extensions for OSGi context.
  */
-@org.osgi.annotation.versioning.Version("1.1.0")
+@org.osgi.annotation.versioning.Version("1.2.0")
 package org.apache.sling.testing.mock.osgi.junit5;
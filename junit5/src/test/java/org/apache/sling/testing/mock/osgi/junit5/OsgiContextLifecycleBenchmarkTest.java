@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi.junit5;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.apache.sling.testing.mock.osgi.MapUtil;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures the overhead per test method of an {@link OsgiContext} set up once per test method,
+ * compared to one set up once per test class and forked for each test method, for fixtures of different size.
+ * The test performs the same steps as {@link OsgiContextExtension} and logs the average time per test method.
+ * <p>
+ * Skipped by default, run with
+ * <code>mvn test -Dtest=OsgiContextLifecycleBenchmarkTest -Dorg.apache.sling.testing.mock.osgi.benchmark=true</code>.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "org.apache.sling.testing.mock.osgi.benchmark", matches = "true")
+class OsgiContextLifecycleBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OsgiContextLifecycleBenchmarkTest.class);
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 100, 1000})
+    void testPerMethodOverhead(int fixtureSize) {
+        long perMethod = measure(ITERATIONS, () -> perMethod(fixtureSize));
+        long perClass = measurePerClass(fixtureSize);
+        log.info(
+                "Fixture with {} services/configurations: {} us per test method with per-method context, "
+                        + "{} us per test method with per-class context",
+                fixtureSize,
+                perMethod / 1000,
+                perClass / 1000);
+    }
+
+    private static void perMethod(int fixtureSize) {
+        OsgiContext context = new OsgiContextBuilder().build();
+        context.setUpContext();
+        try {
+            setUpFixture(context, fixtureSize);
+            testMethod(context, fixtureSize);
+        } finally {
+            context.tearDownContext();
+        }
+    }
+
+    private static long measurePerClass(int fixtureSize) {
+        OsgiContext context = new OsgiContextBuilder().perClass().build();
+        context.setUpContext();
+        try {
+            setUpFixture(context, fixtureSize);
+            return measure(ITERATIONS, () -> {
+                context.fork();
+                try {
+                    testMethod(context, fixtureSize);
+                } finally {
+                    context.discardFork();
+                }
+            });
+        } finally {
+            context.tearDownContext();
+        }
+    }
+
+    /**
+     * @return Average duration of the task in nanoseconds
+     */
+    private static long measure(int iterations, Runnable task) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static void setUpFixture(OsgiContext context, int fixtureSize) {
+        ConfigurationAdmin configAdmin = context.getService(ConfigurationAdmin.class);
+        try {
+            for (int i = 0; i < fixtureSize; i++) {
+                context.registerService(Runnable.class, () -> {}, "index", i);
+                configAdmin.getConfiguration("pid" + i).update(MapUtil.toDictionary("index", i));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void testMethod(OsgiContext context, int fixtureSize) {
+        context.registerService(Integer.class, 5);
+        assertEquals(fixtureSize, context.getServices(Runnable.class, null).length);
+        assertEquals((Integer) 5, context.getService(Integer.class));
+    }
+}
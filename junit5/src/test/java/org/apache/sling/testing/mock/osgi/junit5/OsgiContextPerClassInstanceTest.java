@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi.junit5;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test with {@link OsgiContext} set up once per class in a member variable of a test instance
+ * shared by all test methods.
+ */
+@ExtendWith(OsgiContextExtension.class)
+@TestInstance(Lifecycle.PER_CLASS)
+class OsgiContextPerClassInstanceTest {
+
+    OsgiContext context = new OsgiContextBuilder().perClass().build();
+
+    @BeforeAll
+    void setUpFixture() {
+        context.registerService(String.class, "shared");
+    }
+
+    @BeforeEach
+    void setUp() {
+        // registered in the fork of the test method
+        context.registerService(Integer.class, 5);
+    }
+
+    @Test
+    void testSharedFixture1() {
+        assertServices();
+    }
+
+    @Test
+    void testSharedFixture2() {
+        assertServices();
+    }
+
+    private void assertServices() {
+        assertTrue(context.isForked());
+        assertEquals("shared", context.getService(String.class));
+        assertArrayEquals(new Integer[] {5}, context.getServices(Integer.class, null));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi.junit5;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that a {@link OsgiContext} set up once per class in a member variable of a test instance
+ * created for each test method is rejected.
+ */
+class OsgiContextPerClassMisconfiguredTest {
+
+    @Test
+    void testPerClassContextInInstanceFieldWithoutSharedTestInstance() {
+        ExtensionContext extensionContext = mock(ExtensionContext.class);
+        when(extensionContext.getTestInstanceLifecycle()).thenReturn(Optional.of(Lifecycle.PER_METHOD));
+        PerClassContextTestCase testInstance = new PerClassContextTestCase();
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> new OsgiContextExtension().postProcessTestInstance(testInstance, extensionContext));
+        assertFalse(testInstance.context.isSetUp());
+    }
+
+    static class PerClassContextTestCase {
+        OsgiContext context = new OsgiContextBuilder().perClass().build();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.testing.mock.osgi.junit5;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.testing.mock.osgi.MapUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test with {@link OsgiContext} set up once per class in a static field.
+ */
+@ExtendWith(OsgiContextExtension.class)
+class OsgiContextPerClassTest {
+
+    private static final String PID = "test.pid";
+    private static final AtomicInteger AFTER_SETUP_COUNT = new AtomicInteger();
+
+    private static final OsgiContext context = new OsgiContextBuilder()
+            .perClass()
+            .afterSetUp(c -> AFTER_SETUP_COUNT.incrementAndGet())
+            .build();
+
+    @BeforeAll
+    static void setUpFixture() throws IOException {
+        context.registerService(String.class, "shared");
+        context.getService(ConfigurationAdmin.class)
+                .getConfiguration(PID)
+                .update(MapUtil.toDictionary("prop1", "value1"));
+    }
+
+    @Test
+    void testSharedFixture1() throws IOException {
+        assertSharedFixtureAndModify();
+    }
+
+    @Test
+    void testSharedFixture2() throws IOException {
+        assertSharedFixtureAndModify();
+    }
+
+    @Test
+    void testSetUpOnce() {
+        assertEquals(1, AFTER_SETUP_COUNT.get());
+        assertTrue(context.isForked());
+    }
+
+    @Test
+    void testParameter(OsgiContext parameter) {
+        assertSame(context, parameter);
+    }
+
+    @Nested
+    class NestedTest {
+
+        @Test
+        void testSharedFixture() throws IOException {
+            assertSharedFixtureAndModify();
+        }
+    }
+
+    static void assertSharedFixtureAndModify() throws IOException {
+        assertEquals("shared", context.getService(String.class));
+        assertNull(context.getService(Integer.class));
+        Configuration config = context.getService(ConfigurationAdmin.class).getConfiguration(PID);
+        assertEquals("value1", config.getProperties().get("prop1"));
+
+        // changes must not be visible in other test methods
+        context.registerService(Integer.class, 5);
+        config.update(MapUtil.toDictionary("prop1", "value2"));
+    }
+}